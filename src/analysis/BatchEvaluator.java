@@ -0,0 +1,118 @@
+package analysis;
+
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+import java.util.Arrays;
+
+// evaluates many robot configurations at once from structure-of-arrays input
+// inputs are indexed [robot][configuration], so every pass is a unit-stride loop the JIT can vectorize
+public class BatchEvaluator
+{
+    private static final double TAN_LEVEL_THRESHOLD = Math.tan(Constants.SWITCH_LEVEL_THRESHOLD);
+
+    private int robotCount;
+
+    // per-configuration scratch, reused between calls
+    private double[] totalMass = new double[0];
+    private double[] sumMassX = new double[0];
+    private double[] sumMassY = new double[0];
+    private double[] ratio = new double[0];
+
+    // gather buffers for the scalar path
+    private double[] robotMasses;
+    private double[] robotX;
+
+    public BatchEvaluator(int robotCount)
+    {
+        this.robotCount = robotCount;
+        robotMasses = new double[robotCount];
+        robotX = new double[robotCount];
+    }
+
+    private void ensureCapacity(int count)
+    {
+        if (count > ratio.length)
+        {
+            totalMass = new double[count];
+            sumMassX = new double[count];
+            sumMassY = new double[count];
+            ratio = new double[count];
+        }
+    }
+
+    // fill angles and level flags for the first count configurations, either output may be null to skip it
+    // level flags are decided on comX / comY against tan(threshold), so they don't need the angle at all
+    public void evaluate(double[][] masses, double[][] positions, int count, double[] angles, boolean[] level)
+    {
+        ensureCapacity(count);
+
+        // accumulate in the same order as SwitchSolver, switch first, then robots
+        Arrays.fill(totalMass, 0, count, Constants.SWITCH_WEIGHT);
+        Arrays.fill(sumMassX, 0, count, 0);
+        Arrays.fill(sumMassY, 0, count, Constants.SWITCH_WEIGHT * -Constants.SWITCH_COM_PIVOT_DISTANCE);
+
+        double rungY = -Constants.SWITCH_RUNG_PIVOT_DISTANCE;
+        for (int robot = 0; robot < robotCount; robot++)
+        {
+            double[] m = masses[robot];
+            double[] x = positions[robot];
+            for (int i = 0; i < count; i++)
+            {
+                totalMass[i] += m[i];
+                sumMassX[i] += m[i] * x[i];
+                sumMassY[i] += m[i] * rungY;
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            ratio[i] = (sumMassX[i] / totalMass[i]) / (sumMassY[i] / totalMass[i]);
+        }
+
+        if (level != null)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                level[i] = Math.abs(ratio[i]) <= TAN_LEVEL_THRESHOLD;
+            }
+        }
+
+        if (angles != null)
+        {
+            double maxAngle = Constants.SWITCH_MAX_ANGLE;
+            for (int i = 0; i < count; i++)
+            {
+                angles[i] = Math.max(-maxAngle, Math.min(maxAngle, Math.atan(ratio[i])));
+            }
+        }
+    }
+
+    // reference path, one configuration at a time through SwitchSolver
+    public void evaluateScalar(double[][] masses, double[][] positions, int count, double[] angles, boolean[] level)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            for (int robot = 0; robot < robotCount; robot++)
+            {
+                robotMasses[robot] = masses[robot][i];
+                robotX[robot] = positions[robot][i];
+            }
+
+            double angle = SwitchSolver.robotEquilibriumAngle(robotMasses, robotX, robotCount);
+            if (angles != null)
+            {
+                angles[i] = angle;
+            }
+            if (level != null)
+            {
+                level[i] = SwitchSolver.isLevel(angle);
+            }
+        }
+    }
+
+    public int getRobotCount()
+    {
+        return robotCount;
+    }
+}
@@ -0,0 +1,309 @@
+package analysis;
+
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+import java.util.Arrays;
+
+// plans the order in which robots climb and where each one grabs the rung, to maximize the probability the
+// switch ends up level
+// every robot can only reach a horizontal range of the field, and the switch tilts after every climb, which moves
+// that range along the rung for the robots still to come
+// the best final probability from a partial climb depends only on which robots are up and their first moment, so it
+// is memoized per subset of robots on a grid of first moments, shared by every order and placement that reaches it
+public class ClimbPlanner
+{
+    private static final double HALF_LENGTH = Constants.SWITCH_HANDLE_LENGTH / 2;
+    private static final double TAN_LEVEL = Math.tan(Constants.SWITCH_LEVEL_THRESHOLD);
+
+    private double[] robotMasses;
+    private double[] reachMin;
+    private double[] reachMax;
+    private int robotCount;
+    private int fullMask;
+
+    private SweepAxis positionAxis = new SweepAxis(-HALF_LENGTH, HALF_LENGTH, 229);
+    private double positionStdDev = 2;
+    private int momentBins = 4096;
+
+    // per subset of robots on the switch
+    private double[] totalMass;
+    private double[] sumMassY;
+
+    // sum of mass * x range covered by the memo tables, and the memoized best final probability, NaN until computed
+    private double maxMoment;
+    private double[][] memo;
+    private double finalStdDev;
+    private long evaluatedStates;
+
+    public static class Plan
+    {
+        private int[] order;
+        private double[] positions;
+        private double[] angles;
+        private double levelProbability;
+
+        Plan(int[] order, double[] positions, double[] angles, double levelProbability)
+        {
+            this.order = order;
+            this.positions = positions;
+            this.angles = angles;
+            this.levelProbability = levelProbability;
+        }
+
+        // robot climbing at the given step
+        public int getRobot(int step)
+        {
+            return order[step];
+        }
+
+        // where on the rung the robot grabs, in the switch's frame
+        public double getPosition(int robot)
+        {
+            return positions[robot];
+        }
+
+        // equilibrium angle after the given step
+        public double getAngle(int step)
+        {
+            return angles[step];
+        }
+
+        public double getLevelProbability()
+        {
+            return levelProbability;
+        }
+    }
+
+    // reach ranges are horizontal positions relative to the pivot, in the field's frame
+    public ClimbPlanner(double[] robotMasses, double[] reachMin, double[] reachMax)
+    {
+        if (robotMasses.length != reachMin.length || robotMasses.length != reachMax.length)
+        {
+            throw new IllegalArgumentException("need a mass and a reach range per robot");
+        }
+        if (robotMasses.length > 16)
+        {
+            throw new IllegalArgumentException("planning is exponential in robots, " + robotMasses.length + " is too many");
+        }
+
+        this.robotMasses = robotMasses.clone();
+        this.reachMin = reachMin.clone();
+        this.reachMax = reachMax.clone();
+        robotCount = robotMasses.length;
+        fullMask = (1 << robotCount) - 1;
+    }
+
+    // candidate grab positions, evenly spaced along the whole rung
+    public void setPositionSteps(int steps)
+    {
+        positionAxis = new SweepAxis(-HALF_LENGTH, HALF_LENGTH, steps);
+    }
+
+    // standard deviation of where each robot actually ends up around its planned position
+    public void setPositionStdDev(double positionStdDev)
+    {
+        this.positionStdDev = positionStdDev;
+    }
+
+    // resolution of the memo tables over the first moment
+    public void setMomentBins(int momentBins)
+    {
+        this.momentBins = momentBins;
+    }
+
+    // null if some robot can't reach the rung in any order
+    public Plan plan()
+    {
+        prepare();
+
+        int[] order = new int[robotCount];
+        double[] positions = new double[robotCount];
+        double[] angles = new double[robotCount];
+
+        int mask = 0;
+        double sumMassX = 0;
+        for (int step = 0; step < robotCount; step++)
+        {
+            double bestValue = -1;
+            int bestRobot = -1;
+            double bestPosition = 0;
+
+            for (int robot = 0; robot < robotCount; robot++)
+            {
+                if ((mask & (1 << robot)) != 0)
+                {
+                    continue;
+                }
+
+                int[] range = reachableIndices(mask, sumMassX, robot);
+                for (int j = range[0]; j <= range[1]; j++)
+                {
+                    double x = positionAxis.value(j);
+                    double value = value(mask | (1 << robot), sumMassX + robotMasses[robot] * x);
+                    if (value > bestValue)
+                    {
+                        bestValue = value;
+                        bestRobot = robot;
+                        bestPosition = x;
+                    }
+                }
+            }
+
+            if (bestRobot < 0)
+            {
+                return null;
+            }
+
+            mask |= 1 << bestRobot;
+            sumMassX += robotMasses[bestRobot] * bestPosition;
+            order[step] = bestRobot;
+            positions[bestRobot] = bestPosition;
+            angles[step] = angle(mask, sumMassX);
+        }
+
+        return new Plan(order, positions, angles, levelProbability(sumMassX));
+    }
+
+    private void prepare()
+    {
+        totalMass = new double[fullMask + 1];
+        sumMassY = new double[fullMask + 1];
+        double sumSquares = 0;
+        maxMoment = 0;
+        for (int mask = 0; mask <= fullMask; mask++)
+        {
+            totalMass[mask] = Constants.SWITCH_WEIGHT;
+            sumMassY[mask] = Constants.SWITCH_WEIGHT * -Constants.SWITCH_COM_PIVOT_DISTANCE;
+            for (int i = 0; i < robotCount; i++)
+            {
+                if ((mask & (1 << i)) != 0)
+                {
+                    totalMass[mask] += robotMasses[i];
+                    sumMassY[mask] += robotMasses[i] * -Constants.SWITCH_RUNG_PIVOT_DISTANCE;
+                }
+            }
+        }
+        for (double mass : robotMasses)
+        {
+            maxMoment += mass * HALF_LENGTH;
+            sumSquares += mass * mass;
+        }
+
+        // placement errors are independent, so the final first moment is off by a normal with this deviation
+        finalStdDev = positionStdDev * Math.sqrt(sumSquares);
+
+        memo = new double[fullMask][];
+        evaluatedStates = 0;
+    }
+
+    // best final probability from a partial climb, interpolated between the memoized grid points around it
+    private double value(int mask, double sumMassX)
+    {
+        if (mask == fullMask)
+        {
+            return levelProbability(sumMassX);
+        }
+
+        if (memo[mask] == null)
+        {
+            memo[mask] = new double[momentBins];
+            Arrays.fill(memo[mask], Double.NaN);
+        }
+
+        double bin = (sumMassX + maxMoment) / (2 * maxMoment) * (momentBins - 1);
+        if (!(bin > 0))
+        {
+            return memoized(mask, 0);
+        }
+        if (bin >= momentBins - 1)
+        {
+            return memoized(mask, momentBins - 1);
+        }
+
+        int low = (int) bin;
+        double fraction = bin - low;
+        return memoized(mask, low) * (1 - fraction) + memoized(mask, low + 1) * fraction;
+    }
+
+    private double memoized(int mask, int bin)
+    {
+        double value = memo[mask][bin];
+        if (Double.isNaN(value))
+        {
+            double sumMassX = maxMoment == 0 ? 0 : -maxMoment + 2 * maxMoment * bin / (momentBins - 1);
+            value = best(mask, sumMassX);
+            memo[mask][bin] = value;
+            evaluatedStates++;
+        }
+        return value;
+    }
+
+    // 0 if no remaining robot can reach the rung
+    private double best(int mask, double sumMassX)
+    {
+        double best = 0;
+        for (int robot = 0; robot < robotCount; robot++)
+        {
+            if ((mask & (1 << robot)) != 0)
+            {
+                continue;
+            }
+
+            int[] range = reachableIndices(mask, sumMassX, robot);
+            for (int j = range[0]; j <= range[1]; j++)
+            {
+                best = Math.max(best, value(mask | (1 << robot), sumMassX + robotMasses[robot] * positionAxis.value(j)));
+            }
+        }
+        return best;
+    }
+
+    // grid positions on the rung inside the robot's reach with the switch at its current angle, empty if first > last
+    private int[] reachableIndices(int mask, double sumMassX, int robot)
+    {
+        // a point on the rung is at x cos + rung sin horizontally from the pivot
+        double angle = angle(mask, sumMassX);
+        double cos = Math.cos(angle);
+        double offset = Constants.SWITCH_RUNG_PIVOT_DISTANCE * Math.sin(angle);
+        double min = Math.max(-HALF_LENGTH, (reachMin[robot] - offset) / cos);
+        double max = Math.min(HALF_LENGTH, (reachMax[robot] - offset) / cos);
+
+        int steps = positionAxis.getSteps();
+        double spacing = steps == 1 ? 1 : Constants.SWITCH_HANDLE_LENGTH / (steps - 1);
+        int first = (int) Math.max(0, Math.ceil((min + HALF_LENGTH) / spacing - 1e-9));
+        int last = (int) Math.min(steps - 1, Math.floor((max + HALF_LENGTH) / spacing + 1e-9));
+        return new int[]{first, last};
+    }
+
+    private double angle(int mask, double sumMassX)
+    {
+        return SwitchSolver.equilibriumAngle(sumMassX / totalMass[mask], sumMassY[mask] / totalMass[mask]);
+    }
+
+    // level while the first moment stays within tan(threshold) * |sum of mass * y| of zero
+    private double levelProbability(double sumMassX)
+    {
+        double limit = TAN_LEVEL * Math.abs(sumMassY[fullMask]);
+        if (finalStdDev == 0)
+        {
+            return Math.abs(sumMassX) <= limit ? 1 : 0;
+        }
+        return normalCdf((limit - sumMassX) / finalStdDev) - normalCdf((-limit - sumMassX) / finalStdDev);
+    }
+
+    // Abramowitz and Stegun 7.1.26, erf absolute error at most 1.5e-7, so at most 7.5e-8 for the cdf
+    private static double normalCdf(double z)
+    {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-x * x);
+        return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+
+    // memo entries filled by the last plan
+    public long getEvaluatedStates()
+    {
+        return evaluatedStates;
+    }
+}
@@ -0,0 +1,296 @@
+package analysis;
+
+import simulation.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// every joint placement of the robots that keeps the switch level, for fixed robot weights
+// a placement is level while |sum of mass * x| <= tan(threshold) * |sum of mass * y|, which is linear in the
+// positions, so the region is the box of positions on the handle cut by a slab: a convex polytope
+// membership and distance only need the slab's normal and width, precomputed here, so they take O(robots)
+public class FeasibleRegion
+{
+    private static final double HALF_LENGTH = Constants.SWITCH_HANDLE_LENGTH / 2;
+
+    private double[] robotMasses;
+    private int robotCount;
+
+    // slab |robotMasses . x| <= levelMoment
+    private double levelMoment;
+    private double massNorm;
+
+    // facets as normal . x <= offset, only the ones that bound the region in a full face
+    private List<double[]> facetNormals = new ArrayList<>();
+    private List<Double> facetOffsets = new ArrayList<>();
+    private List<double[]> vertices = new ArrayList<>();
+
+    public FeasibleRegion(double[] robotMasses)
+    {
+        if (robotMasses.length > 20)
+        {
+            throw new IllegalArgumentException("vertex enumeration is exponential in robots, " + robotMasses.length + " is too many");
+        }
+
+        this.robotMasses = robotMasses.clone();
+        robotCount = robotMasses.length;
+
+        double sumMassY = Constants.SWITCH_WEIGHT * -Constants.SWITCH_COM_PIVOT_DISTANCE;
+        double reach = 0;
+        for (double mass : robotMasses)
+        {
+            if (mass < 0)
+            {
+                throw new IllegalArgumentException("robot mass " + mass + " is negative");
+            }
+            sumMassY += mass * -Constants.SWITCH_RUNG_PIVOT_DISTANCE;
+            massNorm += mass * mass;
+            reach += mass * HALF_LENGTH;
+        }
+        massNorm = Math.sqrt(massNorm);
+        levelMoment = Math.tan(Constants.SWITCH_LEVEL_THRESHOLD) * Math.abs(sumMassY);
+
+        findFacets(reach);
+        findVertices();
+    }
+
+    private void findFacets(double reach)
+    {
+        // a side of the box is a facet if the slab keeps part of it with nonzero area
+        for (int k = 0; k < robotCount; k++)
+        {
+            double others = reach - robotMasses[k] * HALF_LENGTH;
+            for (int sign = -1; sign <= 1; sign += 2)
+            {
+                double center = sign * robotMasses[k] * HALF_LENGTH;
+                if (center - others < levelMoment && center + others > -levelMoment)
+                {
+                    double[] normal = new double[robotCount];
+                    normal[k] = sign;
+                    addFacet(normal, HALF_LENGTH);
+                }
+            }
+        }
+
+        // the slab's sides are facets if the box reaches past them
+        if (reach > levelMoment)
+        {
+            for (int sign = -1; sign <= 1; sign += 2)
+            {
+                double[] normal = new double[robotCount];
+                for (int i = 0; i < robotCount; i++)
+                {
+                    normal[i] = sign * robotMasses[i] / massNorm;
+                }
+                addFacet(normal, levelMoment / massNorm);
+            }
+        }
+    }
+
+    private void addFacet(double[] normal, double offset)
+    {
+        facetNormals.add(normal);
+        facetOffsets.add(offset);
+    }
+
+    // box corners inside the slab, and where box edges cross the slab's sides
+    private void findVertices()
+    {
+        double[] corner = new double[robotCount];
+        for (int bits = 0; bits < 1 << robotCount; bits++)
+        {
+            double moment = 0;
+            for (int i = 0; i < robotCount; i++)
+            {
+                corner[i] = (bits & (1 << i)) != 0 ? HALF_LENGTH : -HALF_LENGTH;
+                moment += robotMasses[i] * corner[i];
+            }
+            if (Math.abs(moment) <= levelMoment)
+            {
+                vertices.add(corner.clone());
+            }
+
+            // edges along robot k from this corner, counted once from the corner with robot k at the low end
+            for (int k = 0; k < robotCount; k++)
+            {
+                if ((bits & (1 << k)) != 0 || robotMasses[k] == 0)
+                {
+                    continue;
+                }
+
+                double others = moment - robotMasses[k] * corner[k];
+                for (int sign = -1; sign <= 1; sign += 2)
+                {
+                    double x = (sign * levelMoment - others) / robotMasses[k];
+                    if (x > -HALF_LENGTH && x < HALF_LENGTH)
+                    {
+                        double[] vertex = corner.clone();
+                        vertex[k] = x;
+                        vertices.add(vertex);
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean contains(double[] positions)
+    {
+        double moment = 0;
+        for (int i = 0; i < robotCount; i++)
+        {
+            if (Math.abs(positions[i]) > HALF_LENGTH)
+            {
+                return false;
+            }
+            moment += robotMasses[i] * positions[i];
+        }
+        return Math.abs(moment) <= levelMoment;
+    }
+
+    // distance to the boundary from inside, negative distance to the region from outside
+    public double distanceToBoundary(double[] positions)
+    {
+        if (!contains(positions))
+        {
+            double[] projected = new double[robotCount];
+            project(positions, projected);
+            double squared = 0;
+            for (int i = 0; i < robotCount; i++)
+            {
+                squared += (positions[i] - projected[i]) * (positions[i] - projected[i]);
+            }
+            return -Math.sqrt(squared);
+        }
+
+        // for a convex region the nearest boundary point is on the nearest supporting plane
+        double distance = Double.POSITIVE_INFINITY;
+        double moment = 0;
+        for (int i = 0; i < robotCount; i++)
+        {
+            distance = Math.min(distance, HALF_LENGTH - Math.abs(positions[i]));
+            moment += robotMasses[i] * positions[i];
+        }
+        if (massNorm > 0)
+        {
+            distance = Math.min(distance, (levelMoment - Math.abs(moment)) / massNorm);
+        }
+        return distance;
+    }
+
+    // closest placement in the region, exactly
+    // the box projection of x - lambda * masses has a moment that is piecewise linear and decreasing in lambda,
+    // so lambda is found between the breakpoints where positions start or stop being clamped
+    public void project(double[] positions, double[] projected)
+    {
+        double moment = 0;
+        for (int i = 0; i < robotCount; i++)
+        {
+            projected[i] = clamp(positions[i]);
+            moment += robotMasses[i] * projected[i];
+        }
+        if (Math.abs(moment) <= levelMoment)
+        {
+            return;
+        }
+
+        double target = Math.copySign(levelMoment, moment);
+        double[] breakpoints = new double[robotCount * 2];
+        int count = 0;
+        for (int i = 0; i < robotCount; i++)
+        {
+            if (robotMasses[i] > 0)
+            {
+                breakpoints[count++] = (positions[i] - HALF_LENGTH) / robotMasses[i];
+                breakpoints[count++] = (positions[i] + HALF_LENGTH) / robotMasses[i];
+            }
+        }
+        Arrays.sort(breakpoints, 0, count);
+
+        // moment at lambda 0 is past the target, walk the breakpoints in the direction that reduces it
+        double lowLambda = 0;
+        double lowMoment = moment;
+        int step = moment > 0 ? 1 : -1;
+        int start = moment > 0 ? 0 : count - 1;
+        for (int b = start; b >= 0 && b < count; b += step)
+        {
+            double lambda = breakpoints[b];
+            if (lambda * step <= lowLambda * step)
+            {
+                continue;
+            }
+
+            double lambdaMoment = shiftedMoment(positions, lambda);
+            if ((lambdaMoment - target) * step <= 0)
+            {
+                // linear between the last two breakpoints
+                double exact = lowLambda + (target - lowMoment) * (lambda - lowLambda) / (lambdaMoment - lowMoment);
+                shift(positions, exact, projected);
+                return;
+            }
+            lowLambda = lambda;
+            lowMoment = lambdaMoment;
+        }
+        shift(positions, lowLambda, projected);
+    }
+
+    private double shiftedMoment(double[] positions, double lambda)
+    {
+        double moment = 0;
+        for (int i = 0; i < robotCount; i++)
+        {
+            moment += robotMasses[i] * clamp(positions[i] - lambda * robotMasses[i]);
+        }
+        return moment;
+    }
+
+    private void shift(double[] positions, double lambda, double[] projected)
+    {
+        for (int i = 0; i < robotCount; i++)
+        {
+            projected[i] = clamp(positions[i] - lambda * robotMasses[i]);
+        }
+    }
+
+    private static double clamp(double x)
+    {
+        return Math.max(-HALF_LENGTH, Math.min(HALF_LENGTH, x));
+    }
+
+    public int getRobotCount()
+    {
+        return robotCount;
+    }
+
+    // tan(threshold) * |sum of mass * y|, the largest first moment that is still level
+    public double getLevelMoment()
+    {
+        return levelMoment;
+    }
+
+    public int getVertexCount()
+    {
+        return vertices.size();
+    }
+
+    public double[] getVertex(int vertex)
+    {
+        return vertices.get(vertex).clone();
+    }
+
+    public int getFacetCount()
+    {
+        return facetNormals.size();
+    }
+
+    // unit outward normal
+    public double[] getFacetNormal(int facet)
+    {
+        return facetNormals.get(facet).clone();
+    }
+
+    public double getFacetOffset(int facet)
+    {
+        return facetOffsets.get(facet);
+    }
+}
@@ -0,0 +1,255 @@
+package analysis;
+
+import metrics.CacheStatistics;
+import metrics.SolverMetrics;
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// bounded LRU cache of level intervals keyed by robot masses, quantized so nearby weights share an entry
+// split into independently locked segments so it can be shared across threads without a global lock
+public class LevelIntervalCache implements CacheStatistics
+{
+    private static final int SEGMENTS = 16;
+
+    // numbers the caches registered with SolverMetrics, which holds them weakly
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private int robotCount;
+    private double massQuantum;
+    private long maxMassIndex;
+    private int bitsPerRobot;
+    private Segment[] segments = new Segment[SEGMENTS];
+
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder evictions = new LongAdder();
+
+    // where each robot can hang for the switch to stay level, for one combination of robot masses
+    public static class LevelIntervals
+    {
+        private double[] masses;
+        private double[] levelXMin;
+        private double[] levelXZero;
+        private double[] levelXMax;
+        private double[] reachMin;
+        private double[] reachMax;
+
+        private LevelIntervals(double[] masses)
+        {
+            int robotCount = masses.length;
+            this.masses = masses;
+            levelXMin = new double[robotCount];
+            levelXZero = new double[robotCount];
+            levelXMax = new double[robotCount];
+            reachMin = new double[robotCount];
+            reachMax = new double[robotCount];
+
+            // same bounds as SwitchSimulation, with the other robots in the middle of the rung
+            SwitchSolver solver = new SwitchSolver(robotCount + 1);
+            solver.solveRobots(masses, new double[robotCount], robotCount);
+
+            double totalMass = 0;
+            for (double mass : masses)
+            {
+                totalMass += mass;
+            }
+            double levelMoment = Math.tan(Constants.SWITCH_LEVEL_THRESHOLD) * Math.abs(solver.getSumMassY());
+
+            for (int i = 0; i < robotCount; i++)
+            {
+                levelXMin[i] = solver.getLevelXMin(i + 1);
+                levelXZero[i] = solver.getLevelXZero(i + 1);
+                levelXMax[i] = solver.getLevelXMax(i + 1);
+
+                // widest range for which the other robots can still be placed on the handle to level the switch
+                double otherMoment = (totalMass - masses[i]) * Constants.SWITCH_HANDLE_LENGTH / 2;
+                double reach = Math.min(Constants.SWITCH_HANDLE_LENGTH / 2, (levelMoment + otherMoment) / masses[i]);
+                reachMin[i] = -reach;
+                reachMax[i] = reach;
+            }
+        }
+
+        // masses after quantization, which these intervals were computed for
+        public double getMass(int robot)
+        {
+            return masses[robot];
+        }
+
+        public double getLevelXMin(int robot)
+        {
+            return levelXMin[robot];
+        }
+
+        public double getLevelXZero(int robot)
+        {
+            return levelXZero[robot];
+        }
+
+        public double getLevelXMax(int robot)
+        {
+            return levelXMax[robot];
+        }
+
+        public double getReachMin(int robot)
+        {
+            return reachMin[robot];
+        }
+
+        public double getReachMax(int robot)
+        {
+            return reachMax[robot];
+        }
+    }
+
+    private class Segment extends LinkedHashMap<Long, LevelIntervals>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int capacity;
+
+        Segment(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, LevelIntervals> eldest)
+        {
+            if (size() > capacity)
+            {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public LevelIntervalCache(int robotCount, double massQuantum, int capacity)
+    {
+        this.robotCount = robotCount;
+        this.massQuantum = massQuantum;
+
+        bitsPerRobot = 64 / robotCount;
+        long levels = (long) Math.ceil(Constants.ROBOT_MAX_WEIGHT / massQuantum) + 1;
+        if (bitsPerRobot < 63 && levels > (1L << bitsPerRobot))
+        {
+            throw new IllegalArgumentException("mass quantum " + massQuantum + " is too fine to key " + robotCount + " robots");
+        }
+
+        // highest quantized mass that is still a valid robot weight, checked on the product quantizedMasses computes
+        maxMassIndex = (long) Math.floor(Constants.ROBOT_MAX_WEIGHT / massQuantum);
+        while (maxMassIndex * massQuantum > Constants.ROBOT_MAX_WEIGHT)
+        {
+            maxMassIndex--;
+        }
+
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+        }
+
+        SolverMetrics.getInstance().registerCache("level intervals " + INSTANCES.incrementAndGet(), this);
+    }
+
+    public LevelIntervals get(double[] masses)
+    {
+        long key = key(masses);
+        Segment segment = segments[segmentIndex(key)];
+
+        LevelIntervals intervals;
+        synchronized (segment)
+        {
+            intervals = segment.get(key);
+        }
+        if (intervals != null)
+        {
+            hits.increment();
+            return intervals;
+        }
+        misses.increment();
+
+        // compute outside the lock, if two threads race the first one stored wins
+        LevelIntervals computed = new LevelIntervals(quantizedMasses(key));
+        synchronized (segment)
+        {
+            intervals = segment.putIfAbsent(key, computed);
+        }
+        return intervals != null ? intervals : computed;
+    }
+
+    private long key(double[] masses)
+    {
+        if (masses.length != robotCount)
+        {
+            throw new IllegalArgumentException("expected " + robotCount + " masses, got " + masses.length);
+        }
+
+        long key = 0;
+        for (double mass : masses)
+        {
+            if (!(mass >= 0 && mass <= Constants.ROBOT_MAX_WEIGHT))
+            {
+                throw new IllegalArgumentException("mass " + mass + " is outside 0 to " + Constants.ROBOT_MAX_WEIGHT);
+            }
+            // rounding up near the top could quantize to more than the maximum weight
+            key = (key << bitsPerRobot) | Math.min(Math.round(mass / massQuantum), maxMassIndex);
+        }
+        return key;
+    }
+
+    private double[] quantizedMasses(long key)
+    {
+        double[] masses = new double[robotCount];
+        long mask = bitsPerRobot == 64 ? -1 : (1L << bitsPerRobot) - 1;
+        for (int i = robotCount - 1; i >= 0; i--)
+        {
+            masses[i] = (key & mask) * massQuantum;
+            key >>>= bitsPerRobot;
+        }
+        return masses;
+    }
+
+    private static int segmentIndex(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 60) & (SEGMENTS - 1);
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    @Override
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+}
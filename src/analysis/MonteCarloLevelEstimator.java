@@ -0,0 +1,251 @@
+package analysis;
+
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// estimates the probability that the switch ends up level when robot positions and masses are normally
+// distributed around their nominal values, sampling in parallel with one random stream per worker
+public class MonteCarloLevelEstimator
+{
+    // samples per worker between progress updates
+    private static final int CHUNK_SAMPLES = 1 << 16;
+
+    // two-sided 95% normal quantile
+    private static final double Z = 1.959963984540054;
+
+    private double[] robotMasses;
+    private double[] robotX;
+    private double[] robotY;
+    private double positionStdDev;
+    private double massStdDev;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private volatile boolean cancelled = false;
+
+    public static class Estimate
+    {
+        private long samples;
+        private long level;
+
+        Estimate(long samples, long level)
+        {
+            this.samples = samples;
+            this.level = level;
+        }
+
+        public long getSamples()
+        {
+            return samples;
+        }
+
+        public long getLevelSamples()
+        {
+            return level;
+        }
+
+        public double getProbability()
+        {
+            return (double) level / samples;
+        }
+
+        // Wilson score interval, well behaved when the probability is near 0 or 1
+        public double getLowerBound()
+        {
+            return wilson(-1);
+        }
+
+        public double getUpperBound()
+        {
+            return wilson(1);
+        }
+
+        private double wilson(int sign)
+        {
+            double n = samples;
+            double p = getProbability();
+            double center = p + Z * Z / (2 * n);
+            double spread = Z * Math.sqrt(p * (1 - p) / n + Z * Z / (4 * n * n));
+            return (center + sign * spread) / (1 + Z * Z / n);
+        }
+    }
+
+    public interface ProgressListener
+    {
+        void update(Estimate estimate);
+    }
+
+    // robots with zero nominal mass are treated as absent and left out of the sampling
+    public MonteCarloLevelEstimator(double[] robotMasses, double[] robotX, double positionStdDev, double massStdDev)
+    {
+        this(robotMasses, robotX, rungHeights(robotMasses.length), positionStdDev, massStdDev);
+    }
+
+    // robots whose centers of mass are at robotY relative to the pivot rather than at the rung, only x is sampled
+    public MonteCarloLevelEstimator(double[] robotMasses, double[] robotX, double[] robotY, double positionStdDev, double massStdDev)
+    {
+        this.robotMasses = robotMasses.clone();
+        this.robotX = robotX.clone();
+        this.robotY = robotY.clone();
+        this.positionStdDev = positionStdDev;
+        this.massStdDev = massStdDev;
+    }
+
+    private static double[] rungHeights(int robotCount)
+    {
+        double[] robotY = new double[robotCount];
+        Arrays.fill(robotY, -Constants.SWITCH_RUNG_PIVOT_DISTANCE);
+        return robotY;
+    }
+
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    // can be called from any thread, run returns the estimate so far after the current chunk
+    // interrupting the thread in run stops it at the same point, with an InterruptedException instead
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public Estimate run(long samples, long seed, ProgressListener listener) throws InterruptedException
+    {
+        int workers = pool.getParallelism();
+        List<Sampler> samplers = new ArrayList<>();
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int i = 0; i < workers; i++)
+        {
+            samplers.add(new Sampler(root.split()));
+        }
+
+        long taken = 0;
+        long level = 0;
+        Estimate estimate = new Estimate(0, 0);
+        while (taken < samples && !cancelled)
+        {
+            if (Thread.interrupted())
+            {
+                throw new InterruptedException();
+            }
+
+            // hand each worker an equal share of the next round
+            long round = Math.min(samples - taken, (long) CHUNK_SAMPLES * workers);
+            for (int i = 0; i < workers; i++)
+            {
+                samplers.get(i).count = (int) (round / workers + (i < round % workers ? 1 : 0));
+            }
+
+            try
+            {
+                for (Future<Long> result : pool.invokeAll(samplers))
+                {
+                    level += result.get();
+                }
+            } catch (ExecutionException e)
+            {
+                throw new IllegalStateException(e.getCause());
+            }
+
+            taken += round;
+            estimate = new Estimate(taken, level);
+            if (listener != null)
+            {
+                listener.update(estimate);
+            }
+        }
+
+        return estimate;
+    }
+
+    private class Sampler implements Callable<Long>
+    {
+        private SplittableRandom random;
+        private int count;
+        private double[] masses = new double[robotMasses.length];
+        private double[] positions = new double[robotX.length];
+
+        // second value from the last polar method draw
+        private double spare;
+        private boolean hasSpare = false;
+
+        Sampler(SplittableRandom random)
+        {
+            this.random = random;
+        }
+
+        @Override
+        public Long call()
+        {
+            long level = 0;
+            for (int sample = 0; sample < count; sample++)
+            {
+                for (int i = 0; i < masses.length; i++)
+                {
+                    if (robotMasses[i] > 0)
+                    {
+                        masses[i] = Math.max(0, robotMasses[i] + massStdDev * gaussian());
+                        positions[i] = Math.max(-Constants.SWITCH_HANDLE_LENGTH / 2,
+                                Math.min(Constants.SWITCH_HANDLE_LENGTH / 2, robotX[i] + positionStdDev * gaussian()));
+                    }
+                    else
+                    {
+                        masses[i] = 0;
+                        positions[i] = robotX[i];
+                    }
+                }
+
+                // summed in the same order as SwitchSolver.robotEquilibriumAngle, so robots at the rung match it exactly
+                double totalMass = Constants.SWITCH_WEIGHT;
+                double sumMassX = 0;
+                double sumMassY = Constants.SWITCH_WEIGHT * -Constants.SWITCH_COM_PIVOT_DISTANCE;
+                for (int i = 0; i < masses.length; i++)
+                {
+                    totalMass += masses[i];
+                    sumMassX += masses[i] * positions[i];
+                    sumMassY += masses[i] * robotY[i];
+                }
+
+                if (SwitchSolver.isLevel(SwitchSolver.equilibriumAngle(sumMassX / totalMass, sumMassY / totalMass)))
+                {
+                    level++;
+                }
+            }
+            return level;
+        }
+
+        // Marsaglia polar method, SplittableRandom has no nextGaussian
+        private double gaussian()
+        {
+            if (hasSpare)
+            {
+                hasSpare = false;
+                return spare;
+            }
+
+            double u;
+            double v;
+            double s;
+            do
+            {
+                u = random.nextDouble() * 2 - 1;
+                v = random.nextDouble() * 2 - 1;
+                s = u * u + v * v;
+            } while (s >= 1 || s == 0);
+
+            double scale = Math.sqrt(-2 * Math.log(s) / s);
+            spare = v * scale;
+            hasSpare = true;
+            return u * scale;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package analysis;
+
+import metrics.SolverMetrics;
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// evaluates the equilibrium angle over the Cartesian grid of robot positions and masses
+// cells are numbered row-major over the axes x0..xn-1, m0..mn-1, with the last robot's mass varying fastest
+public class ParameterSweep
+{
+    // cells per fork-join leaf, a multiple of 64 so level bits from different leaves never share a word
+    private static final int LEAF_CELLS = 1 << 14;
+
+    private SweepAxis[] axes;
+    private int robotCount;
+    private long cellCount;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private SolverMetrics metrics = SolverMetrics.getInstance();
+
+    public interface CellVisitor
+    {
+        // called once per cell, concurrently from worker threads
+        void visit(long cell, double angle, boolean level);
+    }
+
+    public ParameterSweep(SweepAxis[] positions, SweepAxis[] masses)
+    {
+        if (positions.length != masses.length)
+        {
+            throw new IllegalArgumentException("need one position axis and one mass axis per robot");
+        }
+
+        robotCount = positions.length;
+        axes = new SweepAxis[robotCount * 2];
+        cellCount = 1;
+
+        for (int i = 0; i < robotCount; i++)
+        {
+            if (positions[i].getMin() < -Constants.SWITCH_HANDLE_LENGTH / 2 || positions[i].getMax() > Constants.SWITCH_HANDLE_LENGTH / 2)
+            {
+                throw new IllegalArgumentException("robot " + i + " position range is off the handle");
+            }
+            if (masses[i].getMin() < 0 || masses[i].getMax() > Constants.ROBOT_MAX_WEIGHT)
+            {
+                throw new IllegalArgumentException("robot " + i + " mass range is outside 0 to " + Constants.ROBOT_MAX_WEIGHT);
+            }
+
+            axes[i] = positions[i];
+            axes[robotCount + i] = masses[i];
+        }
+
+        for (SweepAxis axis : axes)
+        {
+            cellCount = Math.multiplyExact(cellCount, axis.getSteps());
+        }
+    }
+
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    public long getCellCount()
+    {
+        return cellCount;
+    }
+
+    public int getRobotCount()
+    {
+        return robotCount;
+    }
+
+    public SweepAxis getPositionAxis(int robot)
+    {
+        return axes[robot];
+    }
+
+    public SweepAxis getMassAxis(int robot)
+    {
+        return axes[robotCount + robot];
+    }
+
+    public long cellIndex(int[] positionIndices, int[] massIndices)
+    {
+        long cell = 0;
+        for (int i = 0; i < axes.length; i++)
+        {
+            int index = i < robotCount ? positionIndices[i] : massIndices[i - robotCount];
+            cell = cell * axes[i].getSteps() + index;
+        }
+        return cell;
+    }
+
+    // index along one axis of a cell, with axes numbered as in the cell layout
+    public int axisIndex(long cell, int axis)
+    {
+        for (int i = axes.length - 1; i > axis; i--)
+        {
+            cell /= axes[i].getSteps();
+        }
+        return (int) (cell % axes[axis].getSteps());
+    }
+
+    public void sweep(CellVisitor visitor)
+    {
+        sweep(0, cellCount, visitor);
+    }
+
+    // evaluate cells in [start, end) in parallel
+    public void sweep(long start, long end, CellVisitor visitor)
+    {
+        pool.invoke(new SweepAction(start, end, visitor));
+    }
+
+    // fill one angle per cell and one level bit per cell, for grids small enough to fit in arrays
+    // the level words are cleared first, so arrays can be reused across sweeps
+    public void sweepInto(float[] angles, long[] levelBits)
+    {
+        int levelWords = (int) ((cellCount + 63) / 64);
+        if (cellCount > angles.length || levelWords > levelBits.length)
+        {
+            throw new IllegalArgumentException("result arrays are too small for " + cellCount + " cells");
+        }
+
+        // leaves split at multiples of LEAF_CELLS, so no two of them set bits in the same word
+        Arrays.fill(levelBits, 0, levelWords, 0);
+        sweep((cell, angle, level) ->
+        {
+            angles[(int) cell] = (float) angle;
+            if (level)
+            {
+                levelBits[(int) (cell >>> 6)] |= 1L << cell;
+            }
+        });
+    }
+
+    public long countLevel()
+    {
+        return pool.invoke(new CountTask(0, cellCount));
+    }
+
+    // walks cells in [start, end) with an odometer over the axes, so no per-cell allocation or division
+    private void evaluate(long start, long end, CellVisitor visitor, long[] levelCount)
+    {
+        boolean timed = metrics.isEnabled();
+        long startNanos = timed ? System.nanoTime() : 0;
+
+        int[] counters = new int[axes.length];
+        double[] robotX = new double[robotCount];
+        double[] robotMasses = new double[robotCount];
+
+        for (int i = 0; i < axes.length; i++)
+        {
+            counters[i] = axisIndex(start, i);
+        }
+        for (int i = 0; i < robotCount; i++)
+        {
+            robotX[i] = axes[i].value(counters[i]);
+            robotMasses[i] = axes[robotCount + i].value(counters[robotCount + i]);
+        }
+
+        long level = 0;
+        for (long cell = start; cell < end; cell++)
+        {
+            double angle = SwitchSolver.robotEquilibriumAngle(robotMasses, robotX, robotCount);
+            boolean isLevel = SwitchSolver.isLevel(angle);
+            if (visitor != null)
+            {
+                visitor.visit(cell, angle, isLevel);
+            }
+            if (isLevel)
+            {
+                level++;
+            }
+
+            // advance the odometer, last axis fastest
+            for (int i = axes.length - 1; i >= 0; i--)
+            {
+                if (++counters[i] < axes[i].getSteps())
+                {
+                    setAxisValue(i, counters[i], robotX, robotMasses);
+                    break;
+                }
+                counters[i] = 0;
+                setAxisValue(i, 0, robotX, robotMasses);
+            }
+        }
+
+        if (levelCount != null)
+        {
+            levelCount[0] = level;
+        }
+        if (timed)
+        {
+            metrics.recordBatch(end - start, System.nanoTime() - startNanos);
+        }
+    }
+
+    private void setAxisValue(int axis, int index, double[] robotX, double[] robotMasses)
+    {
+        if (axis < robotCount)
+        {
+            robotX[axis] = axes[axis].value(index);
+        }
+        else
+        {
+            robotMasses[axis - robotCount] = axes[axis].value(index);
+        }
+    }
+
+    // split point between start and end that falls on a leaf boundary
+    private static long split(long start, long end)
+    {
+        long mid = start + (end - start) / 2;
+        return Math.max(start + LEAF_CELLS, mid / LEAF_CELLS * LEAF_CELLS);
+    }
+
+    private class SweepAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long start;
+        private long end;
+        private CellVisitor visitor;
+
+        SweepAction(long start, long end, CellVisitor visitor)
+        {
+            this.start = start;
+            this.end = end;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= LEAF_CELLS * 2L)
+            {
+                evaluate(start, end, visitor, null);
+                return;
+            }
+
+            long mid = split(start, end);
+            invokeAll(new SweepAction(start, mid, visitor), new SweepAction(mid, end, visitor));
+        }
+    }
+
+    private class CountTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long start;
+        private long end;
+
+        CountTask(long start, long end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (end - start <= LEAF_CELLS * 2L)
+            {
+                long[] levelCount = new long[1];
+                evaluate(start, end, null, levelCount);
+                return levelCount[0];
+            }
+
+            long mid = split(start, end);
+            CountTask left = new CountTask(start, mid);
+            left.fork();
+            long right = new CountTask(mid, end).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package analysis;
+
+import simulation.Constants;
+import simulation.PointMassOnSwitch;
+import simulation.SwitchSimulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// finds the joint robot placement that maximizes the smallest distance any robot can move before the switch
+// leaves the level band, by projected gradient ascent on a soft minimum from many starting points in parallel
+public class PlacementOptimizer
+{
+    private static final double HALF_LENGTH = Constants.SWITCH_HANDLE_LENGTH / 2;
+
+    // sharpness of the soft minimum, per inch
+    private static final double SOFTNESS = 4;
+    private static final int ITERATIONS = 200;
+    private static final double INITIAL_STEP = 2;
+    private static final double MIN_STEP = 1e-4;
+
+    private double[] robotMasses;
+    private int starts = 64;
+    private long seed = 2473;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // level moment tan(threshold) * |sum of mass * y|, fixed since positions only move along the rung
+    private double levelMoment;
+
+    public static class Placement
+    {
+        private double[] positions;
+        private double[] margins;
+        private double worstMargin;
+
+        Placement(double[] positions, double[] margins, double worstMargin)
+        {
+            this.positions = positions;
+            this.margins = margins;
+            this.worstMargin = worstMargin;
+        }
+
+        public double getPosition(int robot)
+        {
+            return positions[robot];
+        }
+
+        // distance the robot can move either way before the switch is no longer level, NaN for robots without mass
+        public double getMargin(int robot)
+        {
+            return margins[robot];
+        }
+
+        public double getWorstMargin()
+        {
+            return worstMargin;
+        }
+    }
+
+    // robots hanging from the rung
+    public PlacementOptimizer(double[] robotMasses)
+    {
+        this(robotMasses, rungSumMassY(robotMasses));
+    }
+
+    // for any vertical layout, with sumMassY the first moment in y of the switch and everything on it
+    public PlacementOptimizer(double[] robotMasses, double sumMassY)
+    {
+        this.robotMasses = robotMasses.clone();
+        levelMoment = Math.tan(Constants.SWITCH_LEVEL_THRESHOLD) * Math.abs(sumMassY);
+    }
+
+    private static double rungSumMassY(double[] robotMasses)
+    {
+        double sumMassY = Constants.SWITCH_WEIGHT * -Constants.SWITCH_COM_PIVOT_DISTANCE;
+        for (double mass : robotMasses)
+        {
+            sumMassY += mass * -Constants.SWITCH_RUNG_PIVOT_DISTANCE;
+        }
+        return sumMassY;
+    }
+
+    // optimize for the robot weights and bodies currently set in the simulation, placing each robot's center of
+    // mass, which is its attachment point plus PointMassOnSwitch.getComOffsetX
+    public static PlacementOptimizer forSimulation(SwitchSimulation simulation)
+    {
+        List<PointMassOnSwitch> pointMasses = simulation.getPointMasses();
+        double[] masses = new double[pointMasses.size() - 1];
+        for (int i = 0; i < masses.length; i++)
+        {
+            masses[i] = pointMasses.get(i + 1).getTotalMass();
+        }
+        return new PlacementOptimizer(masses, simulation.getSolver().getSumMassY());
+    }
+
+    public void setStarts(int starts)
+    {
+        this.starts = starts;
+    }
+
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    // the initial placement is always one of the starts, the rest are uniform over the handle
+    public Placement optimize(double[] initial) throws InterruptedException
+    {
+        List<Callable<Placement>> tasks = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < starts; i++)
+        {
+            double[] start = new double[robotMasses.length];
+            for (int j = 0; j < start.length; j++)
+            {
+                start[j] = i == 0 ? initial[j] : random.nextDouble(-HALF_LENGTH, HALF_LENGTH);
+            }
+            tasks.add(() -> ascend(start));
+        }
+
+        Placement best = null;
+        try
+        {
+            for (Future<Placement> result : pool.invokeAll(tasks))
+            {
+                Placement placement = result.get();
+                if (best == null || placement.worstMargin > best.worstMargin)
+                {
+                    best = placement;
+                }
+            }
+        } catch (ExecutionException e)
+        {
+            throw new IllegalStateException(e.getCause());
+        }
+        return best;
+    }
+
+    private Placement ascend(double[] positions)
+    {
+        double[] gradient = new double[positions.length];
+        double[] candidate = new double[positions.length];
+        double[] candidateGradient = new double[positions.length];
+
+        double value = softMargin(positions, gradient);
+        double step = INITIAL_STEP;
+        for (int iteration = 0; iteration < ITERATIONS && step > MIN_STEP; iteration++)
+        {
+            for (int i = 0; i < positions.length; i++)
+            {
+                candidate[i] = Math.max(-HALF_LENGTH, Math.min(HALF_LENGTH, positions[i] + step * gradient[i]));
+            }
+
+            double candidateValue = softMargin(candidate, candidateGradient);
+            if (candidateValue > value)
+            {
+                System.arraycopy(candidate, 0, positions, 0, positions.length);
+                System.arraycopy(candidateGradient, 0, gradient, 0, gradient.length);
+                value = candidateValue;
+                step *= 1.5;
+            }
+            else
+            {
+                step /= 2;
+            }
+        }
+
+        return evaluate(positions);
+    }
+
+    // soft minimum over every robot's distance to both ends of its level interval, with its analytic gradient
+    // away from the handle ends, both distances are (levelMoment -+ sum of mass * x) / mass
+    private double softMargin(double[] positions, double[] gradient)
+    {
+        double sumMassX = 0;
+        for (int i = 0; i < positions.length; i++)
+        {
+            sumMassX += robotMasses[i] * positions[i];
+        }
+
+        // first pass for the smallest term, so the exponentials can't overflow
+        double smallest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < positions.length; i++)
+        {
+            if (robotMasses[i] > 0)
+            {
+                smallest = Math.min(smallest, Math.min(lowerMargin(i, positions, sumMassX), upperMargin(i, positions, sumMassX)));
+            }
+        }
+        if (smallest == Double.POSITIVE_INFINITY)
+        {
+            return 0;
+        }
+
+        double weightSum = 0;
+        double momentCoefficient = 0;
+        Arrays.fill(gradient, 0);
+        for (int i = 0; i < positions.length; i++)
+        {
+            if (robotMasses[i] <= 0)
+            {
+                continue;
+            }
+
+            double lower = lowerMargin(i, positions, sumMassX);
+            double lowerWeight = Math.exp(-SOFTNESS * (lower - smallest));
+            weightSum += lowerWeight;
+            if (isLowerClamped(i, positions, sumMassX))
+            {
+                gradient[i] += lowerWeight;
+            }
+            else
+            {
+                momentCoefficient += lowerWeight / robotMasses[i];
+            }
+
+            double upper = upperMargin(i, positions, sumMassX);
+            double upperWeight = Math.exp(-SOFTNESS * (upper - smallest));
+            weightSum += upperWeight;
+            if (isUpperClamped(i, positions, sumMassX))
+            {
+                gradient[i] -= upperWeight;
+            }
+            else
+            {
+                momentCoefficient -= upperWeight / robotMasses[i];
+            }
+        }
+
+        // terms depending on the total moment contribute mass_j times their coefficient to robot j
+        for (int j = 0; j < positions.length; j++)
+        {
+            gradient[j] = (gradient[j] + momentCoefficient * robotMasses[j]) / weightSum;
+        }
+
+        return smallest - Math.log(weightSum) / SOFTNESS;
+    }
+
+    private boolean isLowerClamped(int i, double[] positions, double sumMassX)
+    {
+        return positions[i] - (sumMassX + levelMoment) / robotMasses[i] < -HALF_LENGTH;
+    }
+
+    private boolean isUpperClamped(int i, double[] positions, double sumMassX)
+    {
+        return positions[i] + (levelMoment - sumMassX) / robotMasses[i] > HALF_LENGTH;
+    }
+
+    private double lowerMargin(int i, double[] positions, double sumMassX)
+    {
+        return isLowerClamped(i, positions, sumMassX) ? positions[i] + HALF_LENGTH : (sumMassX + levelMoment) / robotMasses[i];
+    }
+
+    private double upperMargin(int i, double[] positions, double sumMassX)
+    {
+        return isUpperClamped(i, positions, sumMassX) ? HALF_LENGTH - positions[i] : (levelMoment - sumMassX) / robotMasses[i];
+    }
+
+    // exact margins from the same level bounds SwitchSimulation shows, for this optimizer's level moment, so they
+    // also hold when the robots' centers of mass aren't at the rung
+    public Placement evaluate(double[] positions)
+    {
+        double sumMassX = 0;
+        for (int i = 0; i < positions.length; i++)
+        {
+            sumMassX += robotMasses[i] * positions[i];
+        }
+
+        double[] margins = new double[positions.length];
+        double worstMargin = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < positions.length; i++)
+        {
+            if (robotMasses[i] > 0)
+            {
+                double levelXMin = clamp(positions[i] - (sumMassX + levelMoment) / robotMasses[i]);
+                double levelXMax = clamp(positions[i] + (levelMoment - sumMassX) / robotMasses[i]);
+                margins[i] = Math.min(positions[i] - levelXMin, levelXMax - positions[i]);
+                worstMargin = Math.min(worstMargin, margins[i]);
+            }
+            else
+            {
+                margins[i] = Double.NaN;
+            }
+        }
+        return new Placement(positions.clone(), margins, worstMargin);
+    }
+
+    private static double clamp(double x)
+    {
+        return Math.max(-HALF_LENGTH, Math.min(HALF_LENGTH, x));
+    }
+}
@@ -0,0 +1,60 @@
+package analysis;
+
+// evenly spaced values from min to max inclusive
+public class SweepAxis
+{
+    private double min;
+    private double max;
+    private int steps;
+
+    public SweepAxis(double min, double max, int steps)
+    {
+        if (steps < 1)
+        {
+            throw new IllegalArgumentException("axis needs at least one step, got " + steps);
+        }
+        if (max < min)
+        {
+            throw new IllegalArgumentException("axis max " + max + " is less than min " + min);
+        }
+
+        this.min = min;
+        this.max = max;
+        this.steps = steps;
+    }
+
+    public double value(int index)
+    {
+        if (steps == 1)
+        {
+            return min;
+        }
+        return min + (max - min) * index / (steps - 1);
+    }
+
+    // index of the grid value closest to the given value
+    public int nearestIndex(double value)
+    {
+        if (steps == 1 || max == min)
+        {
+            return 0;
+        }
+        long index = Math.round((value - min) / (max - min) * (steps - 1));
+        return (int) Math.max(0, Math.min(steps - 1, index));
+    }
+
+    public double getMin()
+    {
+        return min;
+    }
+
+    public double getMax()
+    {
+        return max;
+    }
+
+    public int getSteps()
+    {
+        return steps;
+    }
+}
@@ -0,0 +1,278 @@
+package analysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// binary sweep results: a header with the axes, then one float angle per cell, then one level bit per cell,
+// all little-endian and in ParameterSweep's cell order
+// files are read through memory mappings, so opening is constant time and no cell data is copied onto the heap
+public class SweepResultFile implements Closeable
+{
+    private static final int MAGIC = 0x50525753; // "SWRP"
+    private static final int VERSION = 1;
+    private static final int AXIS_BYTES = 24;
+    private static final int ALIGNMENT = 64;
+
+    // cells per chunk while writing, a multiple of the sweep's leaf size so leaves never share a level word
+    private static final int WRITE_CHUNK_CELLS = 1 << 22;
+
+    // a single mapping can't exceed 2 GB, so larger regions are split into mappings of this size
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private FileChannel channel;
+    private ParameterSweep layout;
+    private MappedByteBuffer[] angleSegments;
+    private MappedByteBuffer[] levelSegments;
+
+    private SweepResultFile(FileChannel channel) throws IOException
+    {
+        this.channel = channel;
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 16)).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.limit() < 16 || header.getInt(0) != MAGIC)
+        {
+            throw new IOException("not a sweep result file");
+        }
+        if (header.getInt(4) != VERSION)
+        {
+            throw new IOException("unsupported sweep result version " + header.getInt(4));
+        }
+
+        int robotCount = header.getInt(8);
+        if (robotCount < 1 || robotCount > 1024 || headerBytes(robotCount) + 8 > channel.size())
+        {
+            throw new IOException("corrupt sweep result header");
+        }
+
+        header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerBytes(robotCount) + 8).order(ByteOrder.LITTLE_ENDIAN);
+        SweepAxis[] positions = new SweepAxis[robotCount];
+        SweepAxis[] masses = new SweepAxis[robotCount];
+        for (int i = 0; i < robotCount * 2; i++)
+        {
+            int offset = 16 + i * AXIS_BYTES;
+            SweepAxis axis = new SweepAxis(header.getDouble(offset), header.getDouble(offset + 8), header.getInt(offset + 16));
+            if (i < robotCount)
+            {
+                positions[i] = axis;
+            }
+            else
+            {
+                masses[i - robotCount] = axis;
+            }
+        }
+        layout = new ParameterSweep(positions, masses);
+
+        long cellCount = layout.getCellCount();
+        if (header.getLong((int) headerBytes(robotCount)) != cellCount)
+        {
+            throw new IOException("corrupt sweep result header");
+        }
+        long angleOffset = angleOffset(robotCount);
+        long levelOffset = levelOffset(robotCount, cellCount);
+        if (channel.size() < levelOffset + levelBytes(cellCount))
+        {
+            throw new IOException("sweep result file is truncated");
+        }
+
+        angleSegments = map(angleOffset, cellCount * 4);
+        levelSegments = map(levelOffset, levelBytes(cellCount));
+    }
+
+    public static SweepResultFile open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            return new SweepResultFile(channel);
+        } catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // runs the sweep a chunk at a time, writing each region front to back, so memory use doesn't depend on the grid size
+    public static void write(ParameterSweep sweep, Path path) throws IOException
+    {
+        int robotCount = sweep.getRobotCount();
+        long cellCount = sweep.getCellCount();
+        long angleOffset = angleOffset(robotCount);
+        long levelOffset = levelOffset(robotCount, cellCount);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer header = ByteBuffer.allocate((int) angleOffset).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(robotCount).putInt(0);
+            for (int i = 0; i < robotCount * 2; i++)
+            {
+                SweepAxis axis = i < robotCount ? sweep.getPositionAxis(i) : sweep.getMassAxis(i - robotCount);
+                header.putDouble(axis.getMin()).putDouble(axis.getMax()).putInt(axis.getSteps()).putInt(0);
+            }
+            header.putLong(cellCount);
+            header.clear();
+            writeFully(channel, header, 0);
+
+            int chunkCells = (int) Math.min(WRITE_CHUNK_CELLS, cellCount);
+            ByteBuffer angleBytes = ByteBuffer.allocateDirect(chunkCells * 4).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer levelBytes = ByteBuffer.allocateDirect((chunkCells + 63) / 64 * 8).order(ByteOrder.LITTLE_ENDIAN);
+            FloatBuffer angles = angleBytes.asFloatBuffer();
+            long[] levelBits = new long[(chunkCells + 63) / 64];
+
+            for (long start = 0; start < cellCount; start += chunkCells)
+            {
+                long chunkStart = start;
+                long end = Math.min(cellCount, start + chunkCells);
+                Arrays.fill(levelBits, 0);
+
+                // workers write disjoint cells, and disjoint level words since leaves are 64-cell aligned
+                sweep.sweep(start, end, (cell, angle, level) ->
+                {
+                    int index = (int) (cell - chunkStart);
+                    angles.put(index, (float) angle);
+                    if (level)
+                    {
+                        levelBits[index >>> 6] |= 1L << index;
+                    }
+                });
+
+                angleBytes.clear().limit((int) (end - start) * 4);
+                writeFully(channel, angleBytes, angleOffset + start * 4);
+
+                levelBytes.clear();
+                levelBytes.asLongBuffer().put(levelBits, 0, (int) ((end - start + 63) / 64));
+                levelBytes.limit((int) (levelBytes(end - start)));
+                writeFully(channel, levelBytes, levelOffset + start / 8);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private MappedByteBuffer[] map(long offset, long length) throws IOException
+    {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++)
+        {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(length - start, SEGMENT_MASK + 1));
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return segments;
+    }
+
+    private static long headerBytes(int robotCount)
+    {
+        return 16 + (long) robotCount * 2 * AXIS_BYTES;
+    }
+
+    private static long angleOffset(int robotCount)
+    {
+        return align(headerBytes(robotCount) + 8);
+    }
+
+    private static long levelOffset(int robotCount, long cellCount)
+    {
+        return align(angleOffset(robotCount) + cellCount * 4);
+    }
+
+    // whole 64-bit words, so a word never straddles two segments
+    private static long levelBytes(long cellCount)
+    {
+        return (cellCount + 63) / 64 * 8;
+    }
+
+    private static long align(long offset)
+    {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    public float getAngle(long cell)
+    {
+        checkCell(cell);
+        long offset = cell * 4;
+        return angleSegments[(int) (offset >>> SEGMENT_SHIFT)].getFloat((int) (offset & SEGMENT_MASK));
+    }
+
+    public boolean isLevel(long cell)
+    {
+        checkCell(cell);
+        long offset = (cell >>> 6) * 8;
+        long word = levelSegments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & SEGMENT_MASK));
+        return (word & (1L << cell)) != 0;
+    }
+
+    private void checkCell(long cell)
+    {
+        if (cell < 0 || cell >= layout.getCellCount())
+        {
+            throw new IndexOutOfBoundsException("cell " + cell + " is outside 0 to " + layout.getCellCount());
+        }
+    }
+
+    public long cellIndex(int[] positionIndices, int[] massIndices)
+    {
+        return layout.cellIndex(positionIndices, massIndices);
+    }
+
+    // cell whose grid values are closest to the given robot positions and masses
+    public long nearestCell(double[] positions, double[] masses)
+    {
+        int robotCount = layout.getRobotCount();
+        int[] positionIndices = new int[robotCount];
+        int[] massIndices = new int[robotCount];
+        for (int i = 0; i < robotCount; i++)
+        {
+            positionIndices[i] = layout.getPositionAxis(i).nearestIndex(positions[i]);
+            massIndices[i] = layout.getMassAxis(i).nearestIndex(masses[i]);
+        }
+        return layout.cellIndex(positionIndices, massIndices);
+    }
+
+    public int axisIndex(long cell, int axis)
+    {
+        return layout.axisIndex(cell, axis);
+    }
+
+    public long getCellCount()
+    {
+        return layout.getCellCount();
+    }
+
+    public int getRobotCount()
+    {
+        return layout.getRobotCount();
+    }
+
+    public SweepAxis getPositionAxis(int robot)
+    {
+        return layout.getPositionAxis(robot);
+    }
+
+    public SweepAxis getMassAxis(int robot)
+    {
+        return layout.getMassAxis(robot);
+    }
+
+    // mappings stay valid until they are garbage collected, closing only releases the file handle
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,280 @@
+package analysis;
+
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+// replays a time-ordered stream of robot position and weight events through the solver, one incremental update per
+// event, and keeps level time, peak angle and level crossings per fixed-length window
+// only the most recent windows are kept, in a ring buffer, so memory doesn't grow with the length of the replay
+public class TelemetryReplay
+{
+    private int robotCount;
+    private double windowSeconds;
+    private SwitchSolver solver;
+    private ReplayListener listener;
+
+    // ring of the most recent closed windows, next is the slot the current window will close into
+    private double[] windowStart;
+    private double[] windowDuration;
+    private double[] windowLevelTime;
+    private double[] windowMaxAngle;
+    private int[] windowCrossings;
+    private int next;
+    private int closedWindows;
+
+    // sums over the windows in the ring, updated as windows enter and leave it
+    private double rollingDuration;
+    private double rollingLevelTime;
+    private int rollingCrossings;
+
+    private double currentStart = Double.NaN;
+    private double currentLevelTime;
+    private double currentMaxAngle;
+    private int currentCrossings;
+
+    private double time = Double.NaN;
+    private long events;
+    private double totalLevelTime;
+    private double maxAngle;
+    private long crossings;
+
+    public interface ReplayListener
+    {
+        // after every event, with the state it leaves the switch in
+        void frame(double time, double angle, boolean level);
+
+        // angles in radians, the largest magnitude reached during the window
+        void windowClosed(double start, double levelTime, double maxAngle, int crossings);
+    }
+
+    // every robot starts with no weight in the middle of the rung, until its first event
+    public TelemetryReplay(int robotCount, double windowSeconds, int windowCount)
+    {
+        if (!(windowSeconds > 0) || windowCount < 1)
+        {
+            throw new IllegalArgumentException("need a positive window length and at least one window");
+        }
+
+        this.robotCount = robotCount;
+        this.windowSeconds = windowSeconds;
+        windowStart = new double[windowCount];
+        windowDuration = new double[windowCount];
+        windowLevelTime = new double[windowCount];
+        windowMaxAngle = new double[windowCount];
+        windowCrossings = new int[windowCount];
+
+        solver = new SwitchSolver(robotCount + 1);
+        solver.solveRobots(new double[robotCount], new double[robotCount], robotCount);
+    }
+
+    public void setListener(ReplayListener listener)
+    {
+        this.listener = listener;
+    }
+
+    public void apply(double timestamp, int robot, double x, double mass)
+    {
+        if (robot < 0 || robot >= robotCount)
+        {
+            throw new IllegalArgumentException("robot " + robot + " is outside 0 to " + (robotCount - 1));
+        }
+        if (timestamp < time)
+        {
+            throw new IllegalArgumentException("event at " + timestamp + " is before the previous one at " + time);
+        }
+
+        advance(timestamp);
+
+        boolean wasLevel = solver.isLevel();
+        solver.setPointMass(robot + 1, mass, x, -Constants.SWITCH_RUNG_PIVOT_DISTANCE);
+        events++;
+
+        double angle = solver.getEquilibriumAngle();
+        if (solver.isLevel() != wasLevel)
+        {
+            currentCrossings++;
+            crossings++;
+        }
+        currentMaxAngle = Math.max(currentMaxAngle, Math.abs(angle));
+        maxAngle = Math.max(maxAngle, Math.abs(angle));
+
+        if (listener != null)
+        {
+            listener.frame(timestamp, angle, solver.isLevel());
+        }
+    }
+
+    // the switch holds its state until the given time, closing every window that ends on the way
+    public void advance(double timestamp)
+    {
+        if (Double.isNaN(time))
+        {
+            time = timestamp;
+            currentStart = timestamp;
+            currentMaxAngle = Math.abs(solver.getEquilibriumAngle());
+            return;
+        }
+
+        while (timestamp >= currentStart + windowSeconds)
+        {
+            double windowEnd = currentStart + windowSeconds;
+            accumulate(windowEnd - time);
+            time = windowEnd;
+            closeWindow(windowEnd);
+        }
+
+        accumulate(timestamp - time);
+        time = timestamp;
+    }
+
+    // close the window in progress at the end of a replay, it only covers the time up to the last event
+    public void finish()
+    {
+        if (!Double.isNaN(currentStart) && time > currentStart)
+        {
+            closeWindow(time);
+        }
+    }
+
+    private void accumulate(double duration)
+    {
+        if (solver.isLevel())
+        {
+            currentLevelTime += duration;
+            totalLevelTime += duration;
+        }
+    }
+
+    private void closeWindow(double end)
+    {
+        if (listener != null)
+        {
+            listener.windowClosed(currentStart, currentLevelTime, currentMaxAngle, currentCrossings);
+        }
+
+        // the oldest window drops out of the rolling sums once the ring is full
+        if (closedWindows >= windowStart.length)
+        {
+            rollingDuration -= windowDuration[next];
+            rollingLevelTime -= windowLevelTime[next];
+            rollingCrossings -= windowCrossings[next];
+        }
+        windowStart[next] = currentStart;
+        windowDuration[next] = end - currentStart;
+        windowLevelTime[next] = currentLevelTime;
+        windowMaxAngle[next] = currentMaxAngle;
+        windowCrossings[next] = currentCrossings;
+        rollingDuration += end - currentStart;
+        rollingLevelTime += currentLevelTime;
+        rollingCrossings += currentCrossings;
+        next = (next + 1) % windowStart.length;
+        closedWindows++;
+
+        currentStart += windowSeconds;
+        currentLevelTime = 0;
+        currentMaxAngle = Math.abs(solver.getEquilibriumAngle());
+        currentCrossings = 0;
+    }
+
+    // windows still in the ring, oldest first
+    public int getWindowCount()
+    {
+        return Math.min(closedWindows, windowStart.length);
+    }
+
+    private int slot(int window)
+    {
+        if (window < 0 || window >= getWindowCount())
+        {
+            throw new IndexOutOfBoundsException("window " + window);
+        }
+        return (next - getWindowCount() + window + windowStart.length) % windowStart.length;
+    }
+
+    public double getWindowStart(int window)
+    {
+        return windowStart[slot(window)];
+    }
+
+    // the window length, except for a last window closed early by finish
+    public double getWindowDuration(int window)
+    {
+        return windowDuration[slot(window)];
+    }
+
+    public double getWindowLevelTime(int window)
+    {
+        return windowLevelTime[slot(window)];
+    }
+
+    public double getWindowMaxAngle(int window)
+    {
+        return windowMaxAngle[slot(window)];
+    }
+
+    public int getWindowCrossings(int window)
+    {
+        return windowCrossings[slot(window)];
+    }
+
+    // fraction of the time covered by the ring that the switch was level, a short last window counts for its length
+    public double getRollingLevelFraction()
+    {
+        return getWindowCount() == 0 ? 0 : rollingLevelTime / rollingDuration;
+    }
+
+    public double getRollingLevelTime()
+    {
+        return rollingLevelTime;
+    }
+
+    public int getRollingCrossings()
+    {
+        return rollingCrossings;
+    }
+
+    public double getRollingMaxAngle()
+    {
+        double max = 0;
+        for (int i = 0; i < getWindowCount(); i++)
+        {
+            max = Math.max(max, windowMaxAngle[i]);
+        }
+        return max;
+    }
+
+    public long getEventCount()
+    {
+        return events;
+    }
+
+    public double getTime()
+    {
+        return time;
+    }
+
+    public double getTotalLevelTime()
+    {
+        return totalLevelTime;
+    }
+
+    public double getMaxAngle()
+    {
+        return maxAngle;
+    }
+
+    public long getCrossings()
+    {
+        return crossings;
+    }
+
+    public double getEquilibriumAngle()
+    {
+        return solver.getEquilibriumAngle();
+    }
+
+    public boolean isLevel()
+    {
+        return solver.isLevel();
+    }
+}
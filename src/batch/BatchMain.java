@@ -0,0 +1,267 @@
+package batch;
+
+import metrics.SolverMetrics;
+import simulation.SwitchSolver;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+// headless entry point: streams scenarios from a CSV file, solves them in parallel in fixed-size batches and
+// streams results out in input order, so memory use doesn't depend on the size of the input
+// usage: BatchMain [--batch-size rows] [--header] [--metrics] input.csv|- [output.csv]
+// each input row is mass,x for every robot, after a header line only if --header is given, output rows are the angle in degrees, the level flag, and
+// for every robot the ideal x and the tolerances to the far and near end of its level interval
+public class BatchMain
+{
+    private static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    // rows per fork-join leaf
+    private static final int LEAF_ROWS = 1 << 10;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private boolean header = false;
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int batchSize = DEFAULT_BATCH_SIZE;
+        String input = null;
+        String output = null;
+        boolean printMetrics = false;
+        BatchMain batch = new BatchMain();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--batch-size"))
+            {
+                batchSize = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--header"))
+            {
+                batch.header = true;
+            }
+            else if (args[i].equals("--metrics"))
+            {
+                printMetrics = true;
+            }
+            else if (input == null)
+            {
+                input = args[i];
+            }
+            else
+            {
+                output = args[i];
+            }
+        }
+
+        if (input == null)
+        {
+            System.err.println("usage: BatchMain [--batch-size rows] [--header] [--metrics] input.csv|- [output.csv]");
+            System.exit(2);
+        }
+
+        SolverMetrics.getInstance().registerMBean();
+
+        try (BufferedReader reader = input.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8);
+             Writer writer = output == null
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8))
+        {
+            batch.run(reader, writer, batchSize);
+        }
+
+        if (printMetrics)
+        {
+            System.err.print(SolverMetrics.getInstance().snapshot());
+        }
+    }
+
+    // solving batch n overlaps with reading batch n + 1, so at most two batches are held at once
+    public void run(BufferedReader reader, Writer writer, int batchSize) throws IOException, InterruptedException
+    {
+        ScenarioReader scenarios = new ScenarioReader(reader, header);
+        int robotCount = scenarios.getRobotCount();
+        if (robotCount == 0)
+        {
+            return;
+        }
+
+        writeHeader(writer, robotCount);
+
+        Batch current = new Batch(robotCount, batchSize);
+        Batch next = new Batch(robotCount, batchSize);
+        StringBuilder line = new StringBuilder();
+
+        scenarios.read(current);
+        while (current.rows > 0)
+        {
+            Future<Void> solving = pool.submit(new SolveAction(current, 0, current.rows));
+            scenarios.read(next);
+
+            try
+            {
+                solving.get();
+            } catch (ExecutionException e)
+            {
+                throw new IllegalStateException(e.getCause());
+            }
+            current.write(writer, line);
+
+            Batch swap = current;
+            current = next;
+            next = swap;
+        }
+        writer.flush();
+    }
+
+    static void writeHeader(Writer writer, int robotCount) throws IOException
+    {
+        StringBuilder header = new StringBuilder("angle_deg,level");
+        for (int i = 1; i <= robotCount; i++)
+        {
+            header.append(",r").append(i).append("_ideal_x,r").append(i).append("_tol_max,r").append(i).append("_tol_min");
+        }
+        writer.write(header.append('\n').toString());
+    }
+
+    // fixed-size structure-of-arrays block of scenarios and their results, reused for every batch
+    static class Batch
+    {
+        int rows;
+        double[][] masses;
+        double[][] positions;
+
+        double[] angles;
+        boolean[] level;
+        double[][] levelXMin;
+        double[][] levelXZero;
+        double[][] levelXMax;
+
+        Batch(int robotCount, int capacity)
+        {
+            masses = new double[robotCount][capacity];
+            positions = new double[robotCount][capacity];
+            angles = new double[capacity];
+            level = new boolean[capacity];
+            levelXMin = new double[robotCount][capacity];
+            levelXZero = new double[robotCount][capacity];
+            levelXMax = new double[robotCount][capacity];
+        }
+
+        int capacity()
+        {
+            return angles.length;
+        }
+
+        void solve(int start, int end)
+        {
+            SolverMetrics metrics = SolverMetrics.getInstance();
+            boolean timed = metrics.isEnabled();
+            long startNanos = timed ? System.nanoTime() : 0;
+
+            int robotCount = masses.length;
+            SwitchSolver solver = new SwitchSolver(robotCount + 1);
+            double[] rowMasses = new double[robotCount];
+            double[] rowPositions = new double[robotCount];
+
+            for (int row = start; row < end; row++)
+            {
+                for (int i = 0; i < robotCount; i++)
+                {
+                    rowMasses[i] = masses[i][row];
+                    rowPositions[i] = positions[i][row];
+                }
+
+                solver.solveRobots(rowMasses, rowPositions, robotCount);
+                angles[row] = solver.getEquilibriumAngle();
+                level[row] = solver.isLevel();
+                for (int i = 0; i < robotCount; i++)
+                {
+                    levelXMin[i][row] = solver.getLevelXMin(i + 1);
+                    levelXZero[i][row] = solver.getLevelXZero(i + 1);
+                    levelXMax[i][row] = solver.getLevelXMax(i + 1);
+                }
+            }
+
+            if (timed)
+            {
+                metrics.recordBatch(end - start, System.nanoTime() - startNanos);
+            }
+        }
+
+        void write(Writer writer, StringBuilder line) throws IOException
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                line.setLength(0);
+                appendRounded(line, angles[row] * 180 / Math.PI);
+                line.append(',').append(level[row]);
+                for (int i = 0; i < masses.length; i++)
+                {
+                    double x = positions[i][row];
+                    line.append(',');
+                    appendRounded(line, levelXZero[i][row]);
+                    line.append(',');
+                    appendRounded(line, levelXMax[i][row] - x);
+                    line.append(',');
+                    appendRounded(line, levelXMin[i][row] - x);
+                }
+                line.append('\n');
+                writer.append(line);
+            }
+        }
+
+        // four decimal places is far below anything a robot can be placed to
+        private static void appendRounded(StringBuilder line, double value)
+        {
+            if (Double.isNaN(value) || Double.isInfinite(value))
+            {
+                // robots without mass have no level interval
+                line.append(value);
+                return;
+            }
+            line.append(Math.round(value * 1e4) / 1e4);
+        }
+    }
+
+    static class SolveAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private Batch batch;
+        private int start;
+        private int end;
+
+        SolveAction(Batch batch, int start, int end)
+        {
+            this.batch = batch;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= LEAF_ROWS)
+            {
+                batch.solve(start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new SolveAction(batch, start, mid), new SolveAction(batch, mid, end));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package batch;
+
+import export.ImageSurface;
+import export.PngEncoder;
+import export.SvgSurface;
+import export.SwitchDiagram;
+import simulation.SwitchSolver;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// headless export of the GUI's switch diagram, one PNG or SVG file per scenario row, rendered in parallel
+// input rows are the same as BatchMain's, files are named by row number starting from 1
+// usage: DiagramExportMain [--format png|svg] [--scale pixelsPerInch] [--prefix name] [--header] input.csv|- outputDirectory
+public class DiagramExportMain
+{
+    private static final int BATCH_ROWS = 1 << 10;
+
+    // diagrams per fork-join leaf, each leaf reuses one image
+    private static final int LEAF_ROWS = 4;
+
+    // same view as the GUI window
+    private static final double WIDTH_INCHES = 150;
+    private static final double HEIGHT_INCHES = 150;
+
+    private String format = "png";
+    private double inchToPixel = 6;
+    private String prefix = "switch-";
+    private boolean header = false;
+    private Path directory;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public static void main(String[] args) throws IOException
+    {
+        // AWT rendering without a display
+        System.setProperty("java.awt.headless", "true");
+
+        DiagramExportMain export = new DiagramExportMain();
+        String input = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--format"))
+            {
+                export.format = args[++i];
+            }
+            else if (args[i].equals("--scale"))
+            {
+                export.inchToPixel = Double.parseDouble(args[++i]);
+            }
+            else if (args[i].equals("--prefix"))
+            {
+                export.prefix = args[++i];
+            }
+            else if (args[i].equals("--header"))
+            {
+                export.header = true;
+            }
+            else if (input == null)
+            {
+                input = args[i];
+            }
+            else
+            {
+                export.directory = Paths.get(args[i]);
+            }
+        }
+
+        if (input == null || export.directory == null || !(export.format.equals("png") || export.format.equals("svg")))
+        {
+            System.err.println("usage: DiagramExportMain [--format png|svg] [--scale pixelsPerInch] [--prefix name] [--header] input.csv|- outputDirectory");
+            System.exit(2);
+        }
+
+        Files.createDirectories(export.directory);
+        long start = System.nanoTime();
+        long count;
+        try (BufferedReader reader = input.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8))
+        {
+            count = export.run(reader);
+        }
+        System.err.printf("exported %d diagrams in %.1f s%n", count, (System.nanoTime() - start) / 1e9);
+    }
+
+    // returns the number of diagrams written
+    public long run(BufferedReader reader) throws IOException
+    {
+        ScenarioReader scenarios = new ScenarioReader(reader, header);
+        int robotCount = scenarios.getRobotCount();
+        if (robotCount == 0)
+        {
+            return 0;
+        }
+
+        BatchMain.Batch batch = new BatchMain.Batch(robotCount, BATCH_ROWS);
+        long firstRow = 0;
+        while (true)
+        {
+            scenarios.read(batch);
+            if (batch.rows == 0)
+            {
+                return firstRow;
+            }
+
+            try
+            {
+                pool.invoke(new ExportAction(batch, firstRow, 0, batch.rows));
+            } catch (UncheckedIOException e)
+            {
+                throw e.getCause();
+            }
+            firstRow += batch.rows;
+        }
+    }
+
+    private class ExportAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private BatchMain.Batch batch;
+        private long firstRow;
+        private int start;
+        private int end;
+
+        ExportAction(BatchMain.Batch batch, long firstRow, int start, int end)
+        {
+            this.batch = batch;
+            this.firstRow = firstRow;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= LEAF_ROWS)
+            {
+                try
+                {
+                    export(batch, firstRow, start, end);
+                } catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new ExportAction(batch, firstRow, start, mid), new ExportAction(batch, firstRow, mid, end));
+        }
+    }
+
+    private void export(BatchMain.Batch batch, long firstRow, int start, int end) throws IOException
+    {
+        int robotCount = batch.masses.length;
+        SwitchSolver solver = new SwitchSolver(robotCount + 1);
+        SwitchDiagram diagram = new SwitchDiagram(inchToPixel, WIDTH_INCHES, HEIGHT_INCHES);
+        double[] masses = new double[robotCount];
+        double[] positions = new double[robotCount];
+
+        ImageSurface image = null;
+        PngEncoder encoder = new PngEncoder();
+        SvgSurface svg = null;
+        if (format.equals("png"))
+        {
+            image = new ImageSurface(diagram.getPixelWidth(), diagram.getPixelHeight());
+        }
+        else
+        {
+            svg = new SvgSurface(diagram.getPixelWidth(), diagram.getPixelHeight());
+        }
+
+        for (int row = start; row < end; row++)
+        {
+            for (int i = 0; i < robotCount; i++)
+            {
+                masses[i] = batch.masses[i][row];
+                positions[i] = batch.positions[i][row];
+            }
+            solver.solveRobots(masses, positions, robotCount);
+
+            Path file = directory.resolve(prefix + (firstRow + row + 1) + "." + format);
+            if (image != null)
+            {
+                image.clear();
+                diagram.draw(solver, image);
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file)))
+                {
+                    encoder.write(image.getImage(), out);
+                }
+            }
+            else
+            {
+                svg.clear();
+                diagram.draw(solver, svg);
+                Files.write(file, svg.toSvg().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
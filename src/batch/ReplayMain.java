@@ -0,0 +1,173 @@
+package batch;
+
+import analysis.TelemetryReplay;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// headless telemetry replay: streams timestamp,robot,x,mass events through TelemetryReplay, writing one CSV row per
+// window, or per event with --frames, and a summary to standard error
+// robots are numbered from 1 as in the GUI, timestamps are in seconds, blank lines and lines starting with # are
+// skipped, and so is a header on the first other line
+// usage: ReplayMain [--robots n] [--window seconds] [--windows count] [--frames] events.csv|-
+public class ReplayMain
+{
+    public static void main(String[] args) throws IOException
+    {
+        int robotCount = 3;
+        double windowSeconds = 1;
+        int windowCount = 150;
+        boolean frames = false;
+        String input = null;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--robots"))
+            {
+                robotCount = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--window"))
+            {
+                windowSeconds = Double.parseDouble(args[++i]);
+            }
+            else if (args[i].equals("--windows"))
+            {
+                windowCount = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--frames"))
+            {
+                frames = true;
+            }
+            else
+            {
+                input = args[i];
+            }
+        }
+
+        if (input == null)
+        {
+            System.err.println("usage: ReplayMain [--robots n] [--window seconds] [--windows count] [--frames] events.csv|-");
+            System.exit(2);
+        }
+
+        TelemetryReplay replay = new TelemetryReplay(robotCount, windowSeconds, windowCount);
+        try (BufferedReader reader = input.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8);
+             PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))))
+        {
+            replay.setListener(frames ? new FrameWriter(writer) : new WindowWriter(writer, replay));
+            writer.println(frames ? "time,angle_deg,level" : "window_start,level_time,max_angle_deg,crossings,rolling_level_fraction");
+            run(reader, replay);
+        }
+
+        System.err.printf("%d events over %.1f s, level %.1f s, max angle %.1f deg, %d level crossings%n", replay.getEventCount(),
+                replay.getTime(), replay.getTotalLevelTime(), Math.toDegrees(replay.getMaxAngle()), replay.getCrossings());
+    }
+
+    static void run(BufferedReader reader, TelemetryReplay replay) throws IOException
+    {
+        double[] fields = new double[4];
+        long lineNumber = 0;
+        boolean firstRow = true;
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#"))
+            {
+                continue;
+            }
+
+            try
+            {
+                parse(line, fields);
+            } catch (NumberFormatException e)
+            {
+                if (firstRow)
+                {
+                    // header
+                    firstRow = false;
+                    continue;
+                }
+                throw new IllegalArgumentException("line " + lineNumber + ": expected timestamp,robot,x,mass");
+            }
+            firstRow = false;
+
+            if (fields[1] != Math.rint(fields[1]) || Math.abs(fields[1]) > Integer.MAX_VALUE)
+            {
+                throw new IllegalArgumentException("line " + lineNumber + ": robot " + fields[1] + " is not a whole number");
+            }
+            replay.apply(fields[0], (int) fields[1] - 1, fields[2], fields[3]);
+        }
+        replay.finish();
+    }
+
+    private static void parse(String line, double[] fields)
+    {
+        int start = 0;
+        for (int i = 0; i < fields.length; i++)
+        {
+            int end = i == fields.length - 1 ? line.length() : line.indexOf(',', start);
+            if (end < 0)
+            {
+                throw new NumberFormatException();
+            }
+            fields[i] = Double.parseDouble(line.substring(start, end).trim());
+            start = end + 1;
+        }
+    }
+
+    private static class FrameWriter implements TelemetryReplay.ReplayListener
+    {
+        private PrintWriter writer;
+
+        FrameWriter(PrintWriter writer)
+        {
+            this.writer = writer;
+        }
+
+        @Override
+        public void frame(double time, double angle, boolean level)
+        {
+            writer.printf("%.3f,%.3f,%s%n", time, Math.toDegrees(angle), level);
+        }
+
+        @Override
+        public void windowClosed(double start, double levelTime, double maxAngle, int crossings)
+        {
+        }
+    }
+
+    private static class WindowWriter implements TelemetryReplay.ReplayListener
+    {
+        private PrintWriter writer;
+        private TelemetryReplay replay;
+
+        WindowWriter(PrintWriter writer, TelemetryReplay replay)
+        {
+            this.writer = writer;
+            this.replay = replay;
+        }
+
+        @Override
+        public void frame(double time, double angle, boolean level)
+        {
+        }
+
+        // the rolling fraction is over the windows before this one, it enters the ring right after
+        @Override
+        public void windowClosed(double start, double levelTime, double maxAngle, int crossings)
+        {
+            writer.printf("%.3f,%.3f,%.3f,%d,%.4f%n", start, levelTime, Math.toDegrees(maxAngle), crossings, replay.getRollingLevelFraction());
+        }
+    }
+}
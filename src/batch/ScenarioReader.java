@@ -0,0 +1,134 @@
+package batch;
+
+import simulation.Constants;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+// reads mass,x pairs for every robot from CSV rows into batches, skipping blank lines and, when told there is one,
+// the header, which is never guessed, so a malformed first row fails like any other instead of being skipped
+// masses must be from 0 to the maximum robot weight and positions on the handle, or parsing fails with the line number
+class ScenarioReader
+{
+    private BufferedReader reader;
+    private int robotCount;
+    private long lineNumber = 0;
+
+    // first data row, read ahead to find the number of robots
+    private String pending;
+
+    ScenarioReader(BufferedReader reader, boolean header) throws IOException
+    {
+        this.reader = reader;
+
+        pending = nextLine();
+        if (pending != null && header)
+        {
+            pending = nextLine();
+        }
+
+        if (pending != null)
+        {
+            int columns = countColumns(pending);
+            if (columns % 2 != 0)
+            {
+                throw new IllegalArgumentException("line " + lineNumber + ": expected a mass and a position per robot, got " + columns + " columns");
+            }
+            robotCount = columns / 2;
+        }
+    }
+
+    int getRobotCount()
+    {
+        return robotCount;
+    }
+
+    // fill the batch with up to its capacity rows, setting rows to zero at the end of the input
+    void read(BatchMain.Batch batch) throws IOException
+    {
+        batch.rows = 0;
+        while (batch.rows < batch.capacity())
+        {
+            String line = pending != null ? pending : nextLine();
+            pending = null;
+            if (line == null)
+            {
+                return;
+            }
+
+            parse(line, batch, batch.rows);
+            batch.rows++;
+        }
+    }
+
+    private void parse(String line, BatchMain.Batch batch, int row)
+    {
+        int start = 0;
+        for (int column = 0; column < robotCount * 2; column++)
+        {
+            int end = line.indexOf(',', start);
+            if (end < 0)
+            {
+                end = line.length();
+            }
+            if (start > line.length() || (column == robotCount * 2 - 1) != (end == line.length()))
+            {
+                throw new IllegalArgumentException("line " + lineNumber + ": expected " + robotCount * 2 + " columns");
+            }
+
+            double value;
+            try
+            {
+                value = Double.parseDouble(line.substring(start, end).trim());
+            } catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("line " + lineNumber + ": column " + (column + 1) + " is not a number");
+            }
+
+            // the same ranges ParameterSweep and LevelIntervalCache accept, anything else solves to a meaningless angle
+            if (column % 2 == 0)
+            {
+                if (!(value >= 0 && value <= Constants.ROBOT_MAX_WEIGHT))
+                {
+                    throw new IllegalArgumentException("line " + lineNumber + ": robot " + (column / 2 + 1) + " mass " + value
+                            + " is outside 0 to " + Constants.ROBOT_MAX_WEIGHT);
+                }
+                batch.masses[column / 2][row] = value;
+            }
+            else
+            {
+                if (!(Math.abs(value) <= Constants.SWITCH_HANDLE_LENGTH / 2))
+                {
+                    throw new IllegalArgumentException("line " + lineNumber + ": robot " + (column / 2 + 1) + " position " + value
+                            + " is off the handle");
+                }
+                batch.positions[column / 2][row] = value;
+            }
+            start = end + 1;
+        }
+    }
+
+    private String nextLine() throws IOException
+    {
+        String line;
+        do
+        {
+            line = reader.readLine();
+            lineNumber++;
+        } while (line != null && line.trim().isEmpty());
+        return line;
+    }
+
+    private static int countColumns(String line)
+    {
+        int columns = 1;
+        for (int i = 0; i < line.length(); i++)
+        {
+            if (line.charAt(i) == ',')
+            {
+                columns++;
+            }
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,413 @@
+package batch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import metrics.LatencyHistogram;
+import metrics.SolverMetrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+// embedded HTTP service for level predictions
+// POST /solve takes the same CSV rows as BatchMain, one scenario per row, and answers with the same CSV output
+// POST /solve?header=true skips a header line first, like BatchMain --header
+// GET /stats returns request latency percentiles and the solver metrics as text
+// requests are parsed on handler threads and queued, one batching thread drains everything queued at once and
+// solves it together, so many small concurrent requests cost about as much as one large one
+// usage: SolveServer [--port port] [--threads handlerThreads]
+public class SolveServer
+{
+    private static final int DEFAULT_PORT = 8473;
+
+    // handler threads mostly wait for their batch, so there can be many more than cores
+    private static final int DEFAULT_THREADS = 64;
+
+    private static final int READ_ROWS = 1 << 10;
+    private static final int MAX_REQUEST_ROWS = 1 << 20;
+
+    // longest a handler waits for its batch, a backstop in case the batching thread is gone
+    private static final long SOLVE_TIMEOUT_SECONDS = 60;
+
+    // how long stop waits for the batching thread and the handlers to finish
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+
+    // rows solved on the calling thread, larger batches are split over the fork-join pool
+    private static final int PARALLEL_ROWS = 1 << 12;
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private Thread batcher;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private volatile boolean running;
+
+    // every handler thread parses into its own full-size block, and each request only keeps the rows it parsed
+    private ThreadLocal<BatchMain.Batch> readBlocks = new ThreadLocal<>();
+
+    private LatencyHistogram requestLatency = new LatencyHistogram();
+    private LongAdder batches = new LongAdder();
+    private LongAdder batchedRequests = new LongAdder();
+    private LongAdder solvedRows = new LongAdder();
+
+    // one request's scenarios, in blocks as parsed, filled with results by the batching thread
+    private static class Request
+    {
+        private int robotCount;
+        private List<BatchMain.Batch> blocks = new ArrayList<>();
+        private int rows;
+        private CompletableFuture<Void> solved = new CompletableFuture<>();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = DEFAULT_PORT;
+        int threads = DEFAULT_THREADS;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--port"))
+            {
+                port = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--threads"))
+            {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else
+            {
+                System.err.println("usage: SolveServer [--port port] [--threads handlerThreads]");
+                System.exit(2);
+            }
+        }
+
+        SolverMetrics.getInstance().registerMBean();
+        SolveServer server = new SolveServer();
+        server.start(new InetSocketAddress(port), threads);
+        System.err.println("listening on port " + server.getPort());
+    }
+
+    // Java 8 has no virtual threads, so handlers run on a fixed pool of platform threads instead
+    public void start(InetSocketAddress address, int threads) throws IOException
+    {
+        server = HttpServer.create(address, 0);
+        handlers = Executors.newFixedThreadPool(threads);
+        server.setExecutor(handlers);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+
+        running = true;
+        batcher = new Thread(this::batchLoop, "solve-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+        server.start();
+    }
+
+    // the batch being solved is finished, anything still queued fails, so no handler is left waiting
+    public void stop() throws InterruptedException
+    {
+        running = false;
+        server.stop(0);
+        batcher.interrupt();
+        batcher.join(TimeUnit.SECONDS.toMillis(STOP_TIMEOUT_SECONDS));
+        failQueued();
+
+        handlers.shutdown();
+        if (!handlers.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        {
+            handlers.shutdownNow();
+        }
+    }
+
+    private void failQueued()
+    {
+        List<Request> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        for (Request request : abandoned)
+        {
+            request.solved.completeExceptionally(new IllegalStateException("server stopped"));
+        }
+    }
+
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            if (!exchange.getRequestMethod().equals("POST"))
+            {
+                respond(exchange, 405, "use POST\n");
+                return;
+            }
+
+            Request request;
+            try
+            {
+                request = parse(exchange);
+            } catch (IllegalArgumentException e)
+            {
+                respond(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+
+            queue.add(request);
+            if (!running)
+            {
+                // stopped after the check in stop drained the queue, nothing would take this request
+                failQueued();
+            }
+
+            try
+            {
+                request.solved.get(SOLVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "interrupted\n");
+                return;
+            } catch (TimeoutException e)
+            {
+                respond(exchange, 503, "timed out waiting for the solver\n");
+                return;
+            } catch (ExecutionException e)
+            {
+                respond(exchange, e.getCause() instanceof IllegalStateException ? 503 : 500, e.getCause() + "\n");
+                return;
+            }
+
+            StringWriter output = new StringWriter();
+            StringBuilder line = new StringBuilder();
+            BatchMain.writeHeader(output, request.robotCount);
+            for (BatchMain.Batch block : request.blocks)
+            {
+                block.write(output, line);
+            }
+            respond(exchange, 200, output.toString());
+        } finally
+        {
+            requestLatency.record(System.nanoTime() - start);
+            exchange.close();
+        }
+    }
+
+    private Request parse(HttpExchange exchange) throws IOException
+    {
+        Request request = new Request();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        ScenarioReader scenarios = new ScenarioReader(reader, hasHeader(exchange));
+        request.robotCount = scenarios.getRobotCount();
+        if (request.robotCount == 0)
+        {
+            // an empty answer would look like success, even when the only row was a typo taken for a header
+            throw new IllegalArgumentException("no data rows");
+        }
+
+        BatchMain.Batch readBlock = readBlocks.get();
+        if (readBlock == null || readBlock.masses.length != request.robotCount)
+        {
+            readBlock = new BatchMain.Batch(request.robotCount, READ_ROWS);
+            readBlocks.set(readBlock);
+        }
+
+        while (true)
+        {
+            scenarios.read(readBlock);
+            if (readBlock.rows == 0)
+            {
+                return request;
+            }
+
+            request.blocks.add(copyInputs(readBlock));
+            request.rows += readBlock.rows;
+            if (request.rows > MAX_REQUEST_ROWS)
+            {
+                throw new IllegalArgumentException("more than " + MAX_REQUEST_ROWS + " rows, use batch mode instead");
+            }
+        }
+    }
+
+    private static boolean hasHeader(HttpExchange exchange)
+    {
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null)
+        {
+            for (String parameter : query.split("&"))
+            {
+                if (parameter.equals("header=true"))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // block sized to the rows actually read, so a one-row request doesn't hold a full read block until it's solved
+    private static BatchMain.Batch copyInputs(BatchMain.Batch readBlock)
+    {
+        BatchMain.Batch block = new BatchMain.Batch(readBlock.masses.length, readBlock.rows);
+        block.rows = readBlock.rows;
+        for (int i = 0; i < readBlock.masses.length; i++)
+        {
+            System.arraycopy(readBlock.masses[i], 0, block.masses[i], 0, readBlock.rows);
+            System.arraycopy(readBlock.positions[i], 0, block.positions[i], 0, readBlock.rows);
+        }
+        return block;
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("requests: %d, p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms%n",
+                    requestLatency.getCount(), requestLatency.getPercentile(0.5) / 1e6, requestLatency.getPercentile(0.99) / 1e6,
+                    requestLatency.getPercentile(0.999) / 1e6, requestLatency.getMaxNanos() / 1e6));
+            long batchCount = batches.sum();
+            text.append(String.format("batches: %d, mean %.1f requests per batch, rows solved: %d%n",
+                    batchCount, batchCount == 0 ? 0 : (double) batchedRequests.sum() / batchCount, solvedRows.sum()));
+            text.append(SolverMetrics.getInstance().snapshot());
+            respond(exchange, 200, text.toString());
+        } finally
+        {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+
+    // takes everything queued, groups it by robot count and solves each group as one batch
+    private void batchLoop()
+    {
+        List<Request> pending = new ArrayList<>();
+        while (running)
+        {
+            try
+            {
+                pending.add(queue.take());
+            } catch (InterruptedException e)
+            {
+                return;
+            }
+            queue.drainTo(pending);
+            batches.increment();
+            batchedRequests.add(pending.size());
+
+            while (!pending.isEmpty())
+            {
+                int robotCount = pending.get(0).robotCount;
+                List<Request> group = new ArrayList<>();
+                for (int i = pending.size() - 1; i >= 0; i--)
+                {
+                    if (pending.get(i).robotCount == robotCount)
+                    {
+                        group.add(pending.remove(i));
+                    }
+                }
+
+                try
+                {
+                    solve(robotCount, group);
+                    for (Request request : group)
+                    {
+                        request.solved.complete(null);
+                    }
+                } catch (RuntimeException e)
+                {
+                    for (Request request : group)
+                    {
+                        request.solved.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void solve(int robotCount, List<Request> group)
+    {
+        int rows = 0;
+        for (Request request : group)
+        {
+            rows += request.rows;
+        }
+
+        // gather into one structure-of-arrays batch, solve, and scatter the results back
+        BatchMain.Batch combined = new BatchMain.Batch(robotCount, rows);
+        combined.rows = rows;
+        int row = 0;
+        for (Request request : group)
+        {
+            for (BatchMain.Batch block : request.blocks)
+            {
+                for (int i = 0; i < robotCount; i++)
+                {
+                    System.arraycopy(block.masses[i], 0, combined.masses[i], row, block.rows);
+                    System.arraycopy(block.positions[i], 0, combined.positions[i], row, block.rows);
+                }
+                row += block.rows;
+            }
+        }
+
+        if (rows <= PARALLEL_ROWS)
+        {
+            combined.solve(0, rows);
+        }
+        else
+        {
+            pool.invoke(new BatchMain.SolveAction(combined, 0, rows));
+        }
+        solvedRows.add(rows);
+
+        row = 0;
+        for (Request request : group)
+        {
+            for (BatchMain.Batch block : request.blocks)
+            {
+                System.arraycopy(combined.angles, row, block.angles, 0, block.rows);
+                System.arraycopy(combined.level, row, block.level, 0, block.rows);
+                for (int i = 0; i < robotCount; i++)
+                {
+                    System.arraycopy(combined.levelXMin[i], row, block.levelXMin[i], 0, block.rows);
+                    System.arraycopy(combined.levelXZero[i], row, block.levelXZero[i], 0, block.rows);
+                    System.arraycopy(combined.levelXMax[i], row, block.levelXMax[i], 0, block.rows);
+                }
+                row += block.rows;
+            }
+        }
+    }
+
+    public LatencyHistogram getRequestLatency()
+    {
+        return requestLatency;
+    }
+}
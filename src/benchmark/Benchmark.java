@@ -0,0 +1,38 @@
+package benchmark;
+
+// a single measured operation, run repeatedly by BenchmarkRunner
+public abstract class Benchmark
+{
+    private String name;
+    private long operationsPerCall;
+
+    protected Benchmark(String name)
+    {
+        this(name, 1);
+    }
+
+    // for benchmarks where one call performs many operations, e.g. one call solves a whole batch
+    protected Benchmark(String name, long operationsPerCall)
+    {
+        this.name = name;
+        this.operationsPerCall = operationsPerCall;
+    }
+
+    // called once before warmup, allocation here is not counted
+    public void setUp()
+    {
+    }
+
+    // perform the work being measured, returning something derived from the result so it can't be optimized away
+    public abstract double call();
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getOperationsPerCall()
+    {
+        return operationsPerCall;
+    }
+}
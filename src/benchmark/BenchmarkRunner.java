@@ -0,0 +1,522 @@
+package benchmark;
+
+import analysis.BatchEvaluator;
+import analysis.LevelIntervalCache;
+import analysis.ParameterSweep;
+import analysis.SweepAxis;
+import geometry.Rotation;
+import geometry.Vector2D;
+import metrics.LatencyHistogram;
+import simulation.Constants;
+import simulation.EquilibriumSolver;
+import simulation.PointMassOnSwitch;
+import simulation.SwitchSimulation;
+import simulation.SwitchSolver;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+// command line benchmark harness, reporting time and allocation per operation
+// usage: BenchmarkRunner [-w warmupIterations] [-i iterations] [-t iterationMillis] [-csv file] [nameRegex]
+public class BenchmarkRunner
+{
+    // fixed seed so every run benchmarks the same configurations
+    private static final long SEED = 2473;
+
+    private int warmupIterations = 5;
+    private int measurementIterations = 5;
+    private long iterationMillis = 500;
+    private Pattern filter = Pattern.compile(".*");
+    private PrintStream csv;
+
+    // accumulates results so the JIT can't eliminate benchmark work
+    private static volatile double sink;
+
+    private com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws FileNotFoundException
+    {
+        BenchmarkRunner runner = new BenchmarkRunner();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-w":
+                    runner.warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    runner.measurementIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    runner.iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-csv":
+                    runner.csv = new PrintStream(args[++i]);
+                    runner.csv.println("benchmark,ns_per_op,ns_per_op_stddev,ops_per_s,bytes_per_op,alloc_mb_per_s");
+                    break;
+                default:
+                    runner.filter = Pattern.compile(args[i]);
+            }
+        }
+
+        System.out.printf("%-40s %12s %10s %14s %12s %12s%n", "benchmark", "ns/op", "+-", "ops/s", "B/op", "alloc MB/s");
+        for (Benchmark benchmark : benchmarks())
+        {
+            if (runner.filter.matcher(benchmark.getName()).find())
+            {
+                runner.run(benchmark);
+            }
+        }
+
+        if (runner.csv != null)
+        {
+            runner.csv.close();
+        }
+    }
+
+    static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        benchmarks.add(new Benchmark("SwitchSimulation.construct")
+        {
+            @Override
+            public double call()
+            {
+                return new SwitchSimulation().equilibriumAngleProperty().get();
+            }
+        });
+
+        benchmarks.add(new SimulationBenchmark("SwitchSimulation.recomputeMass")
+        {
+            @Override
+            void change(PointMassOnSwitch robot, boolean toggle)
+            {
+                robot.massProperty().set(toggle ? 100 : 120);
+            }
+        });
+
+        benchmarks.add(new SimulationBenchmark("SwitchSimulation.recomputePosition")
+        {
+            @Override
+            void change(PointMassOnSwitch robot, boolean toggle)
+            {
+                robot.getSwitchRelativePosition().xProperty().set(toggle ? -20 : 20);
+            }
+        });
+
+        benchmarks.add(new SimulationBenchmark("SwitchSimulation.levelBounds")
+        {
+            @Override
+            void change(PointMassOnSwitch robot, boolean toggle)
+            {
+                robot.massProperty().set(toggle ? 100 : 120);
+            }
+
+            @Override
+            double read()
+            {
+                double sum = 0;
+                for (int i = 1; i < simulation.getPointMasses().size(); i++)
+                {
+                    sum += simulation.getLevelXMin().get(i).get();
+                    sum += simulation.getLevelXZero().get(i).get();
+                    sum += simulation.getLevelXMax().get(i).get();
+                }
+                return sum;
+            }
+        });
+
+        benchmarks.add(new SimulationBenchmark("SwitchSimulation.absolutePositions")
+        {
+            @Override
+            void change(PointMassOnSwitch robot, boolean toggle)
+            {
+                robot.massProperty().set(toggle ? 100 : 120);
+            }
+
+            // every point mass moves when the angle changes, as the display reads them
+            @Override
+            double read()
+            {
+                double sum = 0;
+                for (PointMassOnSwitch pointMass : simulation.getPointMasses())
+                {
+                    sum += pointMass.getPosition().xProperty().get() + pointMass.getPosition().yProperty().get();
+                }
+                return sum;
+            }
+        });
+
+        // recording overhead paid by every timed solve and batch
+        benchmarks.add(new Benchmark("LatencyHistogram.record")
+        {
+            private LatencyHistogram histogram = new LatencyHistogram();
+            private long nanos = 0;
+
+            @Override
+            public double call()
+            {
+                nanos = (nanos + 7919) & 0xFFFFF;
+                histogram.record(nanos);
+                return nanos;
+            }
+        });
+
+        benchmarks.add(new Benchmark("Rotation.rotate")
+        {
+            private Rotation rotation = new Rotation();
+            private double theta = 0;
+
+            @Override
+            public double call()
+            {
+                theta += 1e-3;
+                rotation.setAngle(theta);
+                return rotation.rotateX(30, -48) + rotation.rotateY(30, -48);
+            }
+        });
+
+        benchmarks.add(new Benchmark("Vector2D.rotate")
+        {
+            private Vector2D vector = new Vector2D(30, -48);
+            private double theta = 0;
+
+            @Override
+            public double call()
+            {
+                theta += 1e-3;
+                return Vector2D.rotate(vector, theta).xProperty().get();
+            }
+        });
+
+        benchmarks.add(new Benchmark("Vector2D.add")
+        {
+            private Vector2D a = new Vector2D(30, -48);
+            private Vector2D b = new Vector2D(0, Constants.SWITCH_PIVOT_HEIGHT);
+
+            @Override
+            public double call()
+            {
+                return Vector2D.add(a, b).yProperty().get();
+            }
+        });
+
+        benchmarks.add(new BatchBenchmark("SwitchSolver.solveRobots")
+        {
+            private SwitchSolver solver = new SwitchSolver(4);
+
+            @Override
+            double solve(double[] masses, double[] positions)
+            {
+                solver.solveRobots(masses, positions, 3);
+                return solver.getEquilibriumAngle() + solver.getLevelXZero(1);
+            }
+        });
+
+        // cold start from level, the worst case for a configuration unrelated to the last one
+        benchmarks.add(new BatchBenchmark("EquilibriumSolver.solveCold")
+        {
+            private SwitchSolver solver = new SwitchSolver(4);
+            private EquilibriumSolver equilibriumSolver = new EquilibriumSolver(1e-6);
+
+            @Override
+            double solve(double[] masses, double[] positions)
+            {
+                solver.solveRobots(masses, positions, 3);
+                return equilibriumSolver.solve(solver, 0);
+            }
+        });
+
+        // warm start while one robot is dragged along the handle, as the GUI solves
+        benchmarks.add(new Benchmark("EquilibriumSolver.solveDrag")
+        {
+            private SwitchSolver solver = new SwitchSolver(4);
+            private EquilibriumSolver equilibriumSolver = new EquilibriumSolver(1e-6);
+            private double x = 0;
+            private double direction = 0.1;
+
+            @Override
+            public void setUp()
+            {
+                solver.solveRobots(new double[]{120, 100, 80}, new double[]{-10, 5, 0}, 3);
+            }
+
+            @Override
+            public double call()
+            {
+                if (Math.abs(x + direction) > Constants.SWITCH_HANDLE_LENGTH / 2)
+                {
+                    direction = -direction;
+                }
+                x += direction;
+                solver.setPointMass(3, 80, x, -Constants.SWITCH_RUNG_PIVOT_DISTANCE);
+                return equilibriumSolver.solve(solver);
+            }
+        });
+
+        benchmarks.add(new BatchBenchmark("SwitchSolver.robotEquilibriumAngle")
+        {
+            @Override
+            double solve(double[] masses, double[] positions)
+            {
+                return SwitchSolver.robotEquilibriumAngle(masses, positions, 3);
+            }
+        });
+
+        benchmarks.add(new EvaluatorBenchmark("BatchEvaluator.evaluate")
+        {
+            @Override
+            void evaluate(BatchEvaluator evaluator, double[][] masses, double[][] positions, double[] angles, boolean[] level)
+            {
+                evaluator.evaluate(masses, positions, CONFIGURATIONS, angles, level);
+            }
+        });
+
+        benchmarks.add(new EvaluatorBenchmark("BatchEvaluator.evaluateLevelOnly")
+        {
+            @Override
+            void evaluate(BatchEvaluator evaluator, double[][] masses, double[][] positions, double[] angles, boolean[] level)
+            {
+                evaluator.evaluate(masses, positions, CONFIGURATIONS, null, level);
+            }
+        });
+
+        benchmarks.add(new EvaluatorBenchmark("BatchEvaluator.evaluateScalar")
+        {
+            @Override
+            void evaluate(BatchEvaluator evaluator, double[][] masses, double[][] positions, double[] angles, boolean[] level)
+            {
+                evaluator.evaluateScalar(masses, positions, CONFIGURATIONS, angles, level);
+            }
+        });
+
+        benchmarks.add(new BatchBenchmark("LevelIntervalCache.get")
+        {
+            // coarse quantum so the seeded configurations repeat and lookups are mostly hits
+            private LevelIntervalCache cache = new LevelIntervalCache(3, 25, 1 << 12);
+
+            @Override
+            double solve(double[] masses, double[] positions)
+            {
+                return cache.get(masses).getLevelXZero(0);
+            }
+        });
+
+        SweepAxis position = new SweepAxis(-Constants.SWITCH_HANDLE_LENGTH / 2, Constants.SWITCH_HANDLE_LENGTH / 2, 40);
+        SweepAxis mass = new SweepAxis(0, Constants.ROBOT_MAX_WEIGHT, 10);
+        ParameterSweep sweep = new ParameterSweep(new SweepAxis[]{position, position, position}, new SweepAxis[]{mass, mass, mass});
+        benchmarks.add(new Benchmark("ParameterSweep.countLevel", sweep.getCellCount())
+        {
+            @Override
+            public double call()
+            {
+                return sweep.countLevel();
+            }
+        });
+
+        return benchmarks;
+    }
+
+    private void run(Benchmark benchmark)
+    {
+        benchmark.setUp();
+
+        for (int i = 0; i < warmupIterations; i++)
+        {
+            measure(benchmark);
+        }
+
+        double[] nanosPerOp = new double[measurementIterations];
+        double totalBytes = 0;
+        double totalOps = 0;
+        double totalNanos = 0;
+        for (int i = 0; i < measurementIterations; i++)
+        {
+            double[] result = measure(benchmark);
+            nanosPerOp[i] = result[0] / result[1];
+            totalNanos += result[0];
+            totalOps += result[1];
+            totalBytes += result[2];
+        }
+
+        double mean = totalNanos / totalOps;
+        double variance = 0;
+        for (double value : nanosPerOp)
+        {
+            variance += (value - mean) * (value - mean);
+        }
+        double stddev = Math.sqrt(variance / Math.max(1, measurementIterations - 1));
+        double opsPerSecond = 1e9 / mean;
+        double bytesPerOp = totalBytes / totalOps;
+        double allocRate = totalBytes / totalNanos * 1e9 / (1 << 20);
+
+        System.out.printf("%-40s %12.2f %10.2f %14.0f %12.1f %12.1f%n", benchmark.getName(), mean, stddev, opsPerSecond, bytesPerOp, allocRate);
+        if (csv != null)
+        {
+            csv.printf("%s,%f,%f,%f,%f,%f%n", benchmark.getName(), mean, stddev, opsPerSecond, bytesPerOp, allocRate);
+        }
+    }
+
+    // run calls for one iteration, returning elapsed nanos, operations and bytes allocated by all threads
+    private double[] measure(Benchmark benchmark)
+    {
+        long deadline = iterationMillis * 1_000_000;
+        long calls = 0;
+        long batch = 1;
+        double result = 0;
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do
+        {
+            for (long i = 0; i < batch; i++)
+            {
+                result += benchmark.call();
+            }
+            calls += batch;
+            batch = Math.min(batch * 2, 1 << 16);
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < deadline);
+        long bytes = allocatedBytes() - bytesBefore;
+
+        sink += result;
+        return new double[]{elapsed, (double) calls * benchmark.getOperationsPerCall(), bytes};
+    }
+
+    private long allocatedBytes()
+    {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+        {
+            if (bytes > 0)
+            {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    // changes one robot per call, alternating between robots, then reads the angle as the GUI would
+    private abstract static class SimulationBenchmark extends Benchmark
+    {
+        SwitchSimulation simulation;
+        private int calls = 0;
+
+        SimulationBenchmark(String name)
+        {
+            super(name);
+        }
+
+        @Override
+        public void setUp()
+        {
+            simulation = new SwitchSimulation();
+            for (int i = 1; i < simulation.getPointMasses().size(); i++)
+            {
+                simulation.getPointMasses().get(i).massProperty().set(100);
+            }
+        }
+
+        abstract void change(PointMassOnSwitch robot, boolean toggle);
+
+        double read()
+        {
+            return simulation.equilibriumAngleProperty().get();
+        }
+
+        @Override
+        public double call()
+        {
+            calls++;
+            int index = 1 + calls % (simulation.getPointMasses().size() - 1);
+            change(simulation.getPointMasses().get(index), calls % 2 == 0);
+            return read();
+        }
+    }
+
+    // solves a fixed set of random robot configurations, one configuration per call
+    private abstract static class BatchBenchmark extends Benchmark
+    {
+        private static final int CONFIGURATIONS = 1 << 12;
+
+        private double[][] masses = new double[CONFIGURATIONS][3];
+        private double[][] positions = new double[CONFIGURATIONS][3];
+        private int next = 0;
+
+        BatchBenchmark(String name)
+        {
+            super(name);
+        }
+
+        @Override
+        public void setUp()
+        {
+            Random random = new Random(SEED);
+            for (int i = 0; i < CONFIGURATIONS; i++)
+            {
+                for (int j = 0; j < 3; j++)
+                {
+                    masses[i][j] = random.nextDouble() * Constants.ROBOT_MAX_WEIGHT;
+                    positions[i][j] = (random.nextDouble() - 0.5) * Constants.SWITCH_HANDLE_LENGTH;
+                }
+            }
+        }
+
+        abstract double solve(double[] masses, double[] positions);
+
+        @Override
+        public double call()
+        {
+            next = (next + 1) & (CONFIGURATIONS - 1);
+            return solve(masses[next], positions[next]);
+        }
+    }
+
+    // evaluates the same random structure-of-arrays batch on every call, so vector and scalar paths see identical data
+    private abstract static class EvaluatorBenchmark extends Benchmark
+    {
+        static final int CONFIGURATIONS = 1 << 12;
+
+        private BatchEvaluator evaluator = new BatchEvaluator(3);
+        private double[][] masses = new double[3][CONFIGURATIONS];
+        private double[][] positions = new double[3][CONFIGURATIONS];
+        private double[] angles = new double[CONFIGURATIONS];
+        private boolean[] level = new boolean[CONFIGURATIONS];
+
+        EvaluatorBenchmark(String name)
+        {
+            super(name, CONFIGURATIONS);
+        }
+
+        @Override
+        public void setUp()
+        {
+            Random random = new Random(SEED);
+            for (int i = 0; i < CONFIGURATIONS; i++)
+            {
+                for (int j = 0; j < 3; j++)
+                {
+                    masses[j][i] = random.nextDouble() * Constants.ROBOT_MAX_WEIGHT;
+                    positions[j][i] = (random.nextDouble() - 0.5) * Constants.SWITCH_HANDLE_LENGTH;
+                }
+            }
+        }
+
+        abstract void evaluate(BatchEvaluator evaluator, double[][] masses, double[][] positions, double[] angles, boolean[] level);
+
+        @Override
+        public double call()
+        {
+            evaluate(evaluator, masses, positions, angles, level);
+            return angles[0] + (level[CONFIGURATIONS - 1] ? 1 : 0);
+        }
+    }
+}
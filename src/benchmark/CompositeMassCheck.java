@@ -0,0 +1,198 @@
+package benchmark;
+
+import analysis.MonteCarloLevelEstimator;
+import analysis.PlacementOptimizer;
+import geometry.Rotation;
+import physics.CompositeMass;
+import simulation.Constants;
+import simulation.PointMassOnSwitch;
+import simulation.SwitchSimulation;
+import simulation.SwitchSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// checks that robots without bodies give the same angle, level bounds and placement margins as bare robots solved
+// by SwitchSolver, that robots with bodies match every point mass flattened into the switch's frame in angle, torque
+// and noiseless level estimate, and that the level bounds with bodies are attachment points, exits with 1 on any
+// failure
+// usage: CompositeMassCheck [configurations]
+public class CompositeMassCheck
+{
+    private static final long SEED = 2473;
+    private static final int ROBOTS = 3;
+    private static final double PRECISION = 1e-12;
+    private static final double TOLERANCE = 1e-9;
+    private static final double HALF_LENGTH = Constants.SWITCH_HANDLE_LENGTH / 2;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int configurations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        Random random = new Random(SEED);
+        SwitchSolver solver = new SwitchSolver(ROBOTS + 1);
+        double[] masses = new double[ROBOTS];
+        double[] positions = new double[ROBOTS];
+
+        // without bodies
+        SwitchSimulation simulation = new SwitchSimulation(ROBOTS);
+        simulation.solvePrecisionProperty().set(PRECISION);
+        double worstAngle = 0;
+        double worstBound = 0;
+        double worstMargin = 0;
+        for (int c = 0; c < configurations; c++)
+        {
+            for (int i = 0; i < ROBOTS; i++)
+            {
+                masses[i] = random.nextDouble() * Constants.ROBOT_MAX_WEIGHT;
+                positions[i] = (random.nextDouble() - 0.5) * Constants.SWITCH_HANDLE_LENGTH;
+                PointMassOnSwitch robot = simulation.getPointMasses().get(i + 1);
+                robot.massProperty().set(masses[i]);
+                robot.getSwitchRelativePosition().xProperty().set(positions[i]);
+            }
+            solver.solveRobots(masses, positions, ROBOTS);
+
+            worstAngle = Math.max(worstAngle, Math.abs(simulation.equilibriumAngleProperty().get() - solver.getEquilibriumAngle()));
+            PlacementOptimizer.Placement placement = PlacementOptimizer.forSimulation(simulation).evaluate(positions);
+            for (int i = 0; i < ROBOTS; i++)
+            {
+                worstBound = Math.max(worstBound, Math.abs(simulation.getLevelXMin().get(i + 1).get() - solver.getLevelXMin(i + 1)));
+                worstBound = Math.max(worstBound, Math.abs(simulation.getLevelXZero().get(i + 1).get() - solver.getLevelXZero(i + 1)));
+                worstBound = Math.max(worstBound, Math.abs(simulation.getLevelXMax().get(i + 1).get() - solver.getLevelXMax(i + 1)));
+
+                double margin = Math.min(positions[i] - solver.getLevelXMin(i + 1), solver.getLevelXMax(i + 1) - positions[i]);
+                worstMargin = Math.max(worstMargin, Math.abs(placement.getMargin(i) - margin));
+            }
+        }
+        System.out.printf("without bodies: %d configurations, worst angle difference %.3g, worst level bound difference %.3g, worst margin difference %.3g%n",
+                configurations, worstAngle, worstBound, worstMargin);
+        boolean passed = EquilibriumSolverCheck.report(worstAngle <= TOLERANCE, "angle matches bare robots");
+        passed &= EquilibriumSolverCheck.report(worstBound <= TOLERANCE * Constants.SWITCH_HANDLE_LENGTH, "level bounds match bare robots");
+        passed &= EquilibriumSolverCheck.report(worstMargin <= TOLERANCE * Constants.SWITCH_HANDLE_LENGTH, "placement margins match bare robots");
+
+        // with bodies, a fresh simulation each time so bodies don't pile up
+        Rotation rotation = new Rotation();
+        List<double[]> flattened = new ArrayList<>();
+        int[] firstPoint = new int[ROBOTS + 1];
+        worstAngle = 0;
+        double worstTorque = 0;
+        double worstAttachment = 0;
+        long boundsChecked = 0;
+        long estimateMismatches = 0;
+        ForkJoinPool pool = new ForkJoinPool(1);
+        for (int c = 0; c < configurations / 10; c++)
+        {
+            simulation = new SwitchSimulation(ROBOTS);
+            simulation.solvePrecisionProperty().set(PRECISION);
+            flattened.clear();
+            flattened.add(new double[]{Constants.SWITCH_WEIGHT, 0, -Constants.SWITCH_COM_PIVOT_DISTANCE});
+
+            for (int i = 0; i < ROBOTS; i++)
+            {
+                PointMassOnSwitch robot = simulation.getPointMasses().get(i + 1);
+                double mass = random.nextDouble() * Constants.ROBOT_MAX_WEIGHT;
+                double x = (random.nextDouble() - 0.5) * Constants.SWITCH_HANDLE_LENGTH;
+                double y = robot.getSwitchRelativePosition().yProperty().get();
+                robot.massProperty().set(mass);
+                robot.getSwitchRelativePosition().xProperty().set(x);
+                firstPoint[i] = flattened.size();
+                flattened.add(new double[]{mass, x, y});
+                addBody(random, robot.getBody(), x, y, 2, flattened);
+            }
+            firstPoint[ROBOTS] = flattened.size();
+
+            double[] flatMasses = new double[flattened.size()];
+            double[] flatX = new double[flattened.size()];
+            double[] flatY = new double[flattened.size()];
+            for (int j = 0; j < flattened.size(); j++)
+            {
+                flatMasses[j] = flattened.get(j)[0];
+                flatX[j] = flattened.get(j)[1];
+                flatY[j] = flattened.get(j)[2];
+            }
+            SwitchSolver flatSolver = new SwitchSolver(flattened.size());
+            flatSolver.solve(flatMasses, flatX, flatY, flattened.size());
+
+            double angle = simulation.equilibriumAngleProperty().get();
+            worstAngle = Math.max(worstAngle, Math.abs(angle - flatSolver.getEquilibriumAngle()));
+
+            // each robot's torque at the simulation's angle, from its own flattened point masses
+            rotation.setAngle(angle);
+            for (int i = 0; i < ROBOTS; i++)
+            {
+                PointMassOnSwitch robot = simulation.getPointMasses().get(i + 1);
+                double torque = 0;
+                for (int j = firstPoint[i]; j < firstPoint[i + 1]; j++)
+                {
+                    double[] point = flattened.get(j);
+                    torque -= point[0] * rotation.rotateX(point[1], point[2]);
+                }
+                worstTorque = Math.max(worstTorque, Math.abs(robot.torqueProperty().get() - torque) / Constants.ROBOT_MAX_WEIGHT);
+            }
+
+            // with no noise the estimate is all or nothing, and has to agree with the flattened level flag
+            double[] robotMasses = new double[ROBOTS];
+            double[] robotX = new double[ROBOTS];
+            double[] robotY = new double[ROBOTS];
+            for (int i = 0; i < ROBOTS; i++)
+            {
+                PointMassOnSwitch robot = simulation.getPointMasses().get(i + 1);
+                robotMasses[i] = robot.getTotalMass();
+                robotX[i] = robot.getSwitchRelativePosition().xProperty().get() + robot.getComOffsetX();
+                robotY[i] = robot.getSwitchRelativePosition().yProperty().get() + robot.getComOffsetY();
+            }
+            if (Math.abs(Math.abs(flatSolver.getEquilibriumAngle()) - Constants.SWITCH_LEVEL_THRESHOLD) > TOLERANCE)
+            {
+                MonteCarloLevelEstimator estimator = new MonteCarloLevelEstimator(robotMasses, robotX, robotY, 0, 0);
+                estimator.setPool(pool);
+                boolean level = estimator.run(1, SEED, null).getLevelSamples() == 1;
+                if (level != flatSolver.isLevel())
+                {
+                    estimateMismatches++;
+                }
+            }
+
+            // moving the first robot's attachment point to a level bound puts the switch at that bound's angle
+            PointMassOnSwitch robot = simulation.getPointMasses().get(1);
+            double[] bounds = {simulation.getLevelXMin().get(1).get(), simulation.getLevelXZero().get(1).get(), simulation.getLevelXMax().get(1).get()};
+            double[] angles = {Constants.SWITCH_LEVEL_THRESHOLD, 0, -Constants.SWITCH_LEVEL_THRESHOLD};
+            for (int b = 0; b < bounds.length; b++)
+            {
+                // a clamped bound is as far as the attachment point can go, not where the angle is reached
+                if (Math.abs(bounds[b]) < HALF_LENGTH)
+                {
+                    robot.getSwitchRelativePosition().xProperty().set(bounds[b]);
+                    worstAttachment = Math.max(worstAttachment, Math.abs(simulation.equilibriumAngleProperty().get() - angles[b]));
+                    boundsChecked++;
+                }
+            }
+        }
+        System.out.printf("with bodies: %d configurations, worst angle difference %.3g, worst torque difference %.3g, %d bounds checked, worst bound angle difference %.3g%n",
+                configurations / 10, worstAngle, worstTorque, boundsChecked, worstAttachment);
+        passed &= EquilibriumSolverCheck.report(worstAngle <= TOLERANCE, "angle matches the flattened point masses");
+        passed &= EquilibriumSolverCheck.report(worstTorque <= TOLERANCE * Constants.SWITCH_HANDLE_LENGTH, "torques match the flattened point masses");
+        passed &= EquilibriumSolverCheck.report(boundsChecked > 0 && worstAttachment <= TOLERANCE, "level bounds are attachment points");
+        passed &= EquilibriumSolverCheck.report(estimateMismatches == 0, "noiseless level estimates agree with the flattened point masses");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // a few nested children with positive mass, each also added to flattened at its position along the switch's axes
+    private static void addBody(Random random, CompositeMass node, double x, double y, int depth, List<double[]> flattened)
+    {
+        int children = 1 + random.nextInt(2);
+        for (int k = 0; k < children; k++)
+        {
+            double childX = (random.nextDouble() - 0.5) * 10;
+            double childY = random.nextDouble() * 20;
+            double mass = 0.1 + random.nextDouble() * 20;
+            CompositeMass child = node.addChild(childX, childY, mass);
+            flattened.add(new double[]{mass, x + childX, y + childY});
+            if (depth > 1)
+            {
+                addBody(random, child, x + childX, y + childY, depth - 1, flattened);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import simulation.Constants;
+import simulation.EquilibriumSolver;
+import simulation.SwitchSimulation;
+import simulation.SwitchSolver;
+
+import java.util.Random;
+
+// checks EquilibriumSolver against the closed form angle of rigid point masses, over random configurations and
+// along a drag, and that a simulation's angle binding, level flag and solver agree, exits with 1 on any failure
+// usage: EquilibriumSolverCheck [configurations]
+public class EquilibriumSolverCheck
+{
+    private static final long SEED = 2473;
+    private static final double PRECISION = 1e-6;
+
+    public static void main(String[] args)
+    {
+        int configurations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        boolean passed = true;
+
+        SwitchSolver solver = new SwitchSolver(4);
+        EquilibriumSolver equilibriumSolver = new EquilibriumSolver(PRECISION);
+        Random random = new Random(SEED);
+        double[] masses = new double[3];
+        double[] positions = new double[3];
+
+        // cold starts
+        double maxError = 0;
+        for (int i = 0; i < configurations; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                masses[j] = random.nextDouble() * Constants.ROBOT_MAX_WEIGHT;
+                positions[j] = (random.nextDouble() - 0.5) * Constants.SWITCH_HANDLE_LENGTH;
+            }
+            solver.solveRobots(masses, positions, 3);
+            maxError = Math.max(maxError, Math.abs(equilibriumSolver.solve(solver, 0) - solver.getEquilibriumAngle()));
+        }
+        System.out.printf("random configurations: %d, max error %.3g rad, %.2f iterations per solve%n",
+                configurations, maxError, (double) equilibriumSolver.getTotalIterations() / equilibriumSolver.getSolveCount());
+        passed &= report(maxError <= PRECISION, "random configurations within precision");
+
+        // warm starts while dragging one robot across the handle and back
+        EquilibriumSolver dragSolver = new EquilibriumSolver(PRECISION);
+        solver.solveRobots(new double[]{120, 100, 80}, new double[]{-10, 5, 0}, 3);
+        maxError = 0;
+        int steps = 0;
+        for (double x = -Constants.SWITCH_HANDLE_LENGTH / 2; x <= Constants.SWITCH_HANDLE_LENGTH / 2; x += 0.1, steps++)
+        {
+            solver.setPointMass(3, 80, x, -Constants.SWITCH_RUNG_PIVOT_DISTANCE);
+            maxError = Math.max(maxError, Math.abs(dragSolver.solve(solver) - solver.getEquilibriumAngle()));
+        }
+        System.out.printf("drag steps: %d, max error %.3g rad, %.2f iterations per solve%n",
+                steps, maxError, (double) dragSolver.getTotalIterations() / dragSolver.getSolveCount());
+        passed &= report(maxError <= PRECISION, "drag within precision");
+        passed &= report((double) dragSolver.getTotalIterations() / dragSolver.getSolveCount() <= 3, "drag takes at most 3 iterations on average");
+
+        // the binding, the level flag and the solver every display reads must agree exactly, also at the boundary
+        SwitchSimulation simulation = new SwitchSimulation();
+        simulation.getPointMasses().get(1).massProperty().set(120);
+        boolean consistent = true;
+        double levelXMin = simulation.getLevelXMin().get(1).get();
+        for (int i = -200; i <= 200; i++)
+        {
+            simulation.getPointMasses().get(1).getSwitchRelativePosition().xProperty().set(levelXMin + i * 1e-6);
+            double angle = simulation.equilibriumAngleProperty().get();
+            consistent &= angle == simulation.getSolver().getEquilibriumAngle()
+                    && simulation.isLevelProperty().get() == SwitchSolver.isLevel(angle)
+                    && simulation.getSolver().isLevel() == simulation.isLevelProperty().get();
+        }
+        passed &= report(consistent, "simulation angle, level flag and solver agree around the level boundary");
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    static boolean report(boolean passed, String check)
+    {
+        System.out.println((passed ? "ok      " : "FAILED  ") + check);
+        return passed;
+    }
+}
@@ -0,0 +1,114 @@
+package benchmark;
+
+import analysis.FeasibleRegion;
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+import java.util.Random;
+
+// checks FeasibleRegion against the solver's level flag, and its projection against the optimality condition of a
+// projection onto a convex set, tested at every vertex of the region, exits with 1 on any failure
+// usage: FeasibleRegionCheck [regions] [points per region]
+public class FeasibleRegionCheck
+{
+    private static final long SEED = 2473;
+    private static final int ROBOTS = 3;
+    private static final double TOLERANCE = 1e-9;
+
+    public static void main(String[] args)
+    {
+        int regions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int points = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        Random random = new Random(SEED);
+        SwitchSolver solver = new SwitchSolver(ROBOTS + 1);
+        double[] masses = new double[ROBOTS];
+        double[] positions = new double[ROBOTS];
+        double[] projected = new double[ROBOTS];
+
+        long levelMismatches = 0;
+        long distanceMismatches = 0;
+        long outsideVertices = 0;
+        long projections = 0;
+        double worstProjection = 0;
+        double worstProjectionDistance = 0;
+
+        for (int r = 0; r < regions; r++)
+        {
+            for (int i = 0; i < ROBOTS; i++)
+            {
+                masses[i] = random.nextDouble() * Constants.ROBOT_MAX_WEIGHT;
+            }
+            FeasibleRegion region = new FeasibleRegion(masses);
+
+            for (int v = 0; v < region.getVertexCount(); v++)
+            {
+                if (distance(region, region.getVertex(v)) < -TOLERANCE)
+                {
+                    outsideVertices++;
+                }
+            }
+
+            for (int p = 0; p < points; p++)
+            {
+                // a little past the handle ends, so the box sides get projected onto too
+                for (int i = 0; i < ROBOTS; i++)
+                {
+                    positions[i] = (random.nextDouble() - 0.5) * Constants.SWITCH_HANDLE_LENGTH * 1.2;
+                }
+
+                double distance = region.distanceToBoundary(positions);
+                if (distance >= 0 != region.contains(positions))
+                {
+                    distanceMismatches++;
+                }
+
+                // the solver only sees positions on the handle, and rounding decides points right on the boundary
+                boolean onHandle = true;
+                for (double x : positions)
+                {
+                    onHandle &= Math.abs(x) <= Constants.SWITCH_HANDLE_LENGTH / 2;
+                }
+                if (onHandle && Math.abs(distance) > TOLERANCE)
+                {
+                    solver.solveRobots(masses, positions, ROBOTS);
+                    if (solver.isLevel() != region.contains(positions))
+                    {
+                        levelMismatches++;
+                    }
+                }
+
+                region.project(positions, projected);
+                projections++;
+                worstProjectionDistance = Math.min(worstProjectionDistance, distance(region, projected));
+
+                // p is the projection of x onto a convex polytope iff (x - p) . (v - p) <= 0 for every vertex v
+                for (int v = 0; v < region.getVertexCount(); v++)
+                {
+                    double[] vertex = region.getVertex(v);
+                    double dot = 0;
+                    for (int i = 0; i < ROBOTS; i++)
+                    {
+                        dot += (positions[i] - projected[i]) * (vertex[i] - projected[i]);
+                    }
+                    worstProjection = Math.max(worstProjection, dot);
+                }
+            }
+        }
+
+        System.out.printf("regions: %d, points: %d, projections: %d, worst optimality violation %.3g, worst projection outside %.3g%n",
+                regions, (long) regions * points, projections, worstProjection, -worstProjectionDistance);
+        boolean passed = EquilibriumSolverCheck.report(levelMismatches == 0, "contains agrees with the solver's level flag");
+        passed &= EquilibriumSolverCheck.report(distanceMismatches == 0, "distance sign agrees with contains");
+        passed &= EquilibriumSolverCheck.report(outsideVertices == 0, "vertices lie in the region");
+        passed &= EquilibriumSolverCheck.report(-worstProjectionDistance <= TOLERANCE, "projections lie in the region");
+        passed &= EquilibriumSolverCheck.report(worstProjection <= TOLERANCE * Constants.SWITCH_HANDLE_LENGTH, "projections are nearest points");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // signed distance, relative to the handle length, so the tolerance means the same for every weight
+    private static double distance(FeasibleRegion region, double[] positions)
+    {
+        return region.distanceToBoundary(positions) / Constants.SWITCH_HANDLE_LENGTH;
+    }
+}
@@ -0,0 +1,143 @@
+package benchmark;
+
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+import java.util.Random;
+
+// checks the analytic gradients of SwitchSolver against central finite differences over random configurations,
+// skipping partials whose difference straddles a hard stop or the end of the handle, exits with 1 on any failure
+// usage: GradientCheck [configurations]
+public class GradientCheck
+{
+    private static final long SEED = 2473;
+    private static final int COUNT = 4;
+
+    // relative step, and the error allowed on top of the truncation and rounding error of the difference
+    private static final double STEP = 1e-5;
+    private static final double TOLERANCE = 1e-6;
+
+    private static final int ANGLE = -1;
+    private static final int MIN = 0;
+    private static final int ZERO = 1;
+    private static final int MAX = 2;
+
+    private SwitchSolver solver = new SwitchSolver(COUNT);
+    private double[] masses = new double[COUNT];
+    private double[] relativeX = new double[COUNT];
+    private double[] relativeY = new double[COUNT];
+
+    private double maxError;
+    private long compared;
+    private long skipped;
+
+    public static void main(String[] args)
+    {
+        int configurations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        GradientCheck check = new GradientCheck();
+        Random random = new Random(SEED);
+
+        for (int c = 0; c < configurations; c++)
+        {
+            check.masses[0] = Constants.SWITCH_WEIGHT;
+            check.relativeX[0] = 0;
+            check.relativeY[0] = -Constants.SWITCH_COM_PIVOT_DISTANCE;
+            for (int i = 1; i < COUNT; i++)
+            {
+                check.masses[i] = 1 + random.nextDouble() * Constants.ROBOT_MAX_WEIGHT;
+                check.relativeX[i] = (random.nextDouble() - 0.5) * Constants.SWITCH_HANDLE_LENGTH;
+                check.relativeY[i] = -Constants.SWITCH_RUNG_PIVOT_DISTANCE - random.nextDouble() * 10;
+            }
+
+            check.compare(ANGLE, 0);
+            for (int index = 1; index < COUNT; index++)
+            {
+                check.compare(MIN, index);
+                check.compare(ZERO, index);
+                check.compare(MAX, index);
+            }
+        }
+
+        System.out.printf("configurations: %d, partials compared: %d, skipped at a limit: %d, max error %.3g%n",
+                configurations, check.compared, check.skipped, check.maxError);
+        boolean passed = EquilibriumSolverCheck.report(check.maxError <= TOLERANCE, "gradients match central differences");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private void compare(int output, int index)
+    {
+        double[] dMass = new double[COUNT];
+        double[] dX = new double[COUNT];
+        double[] dY = new double[COUNT];
+        solver.solve(masses, relativeX, relativeY, COUNT);
+        switch (output)
+        {
+            case ANGLE:
+                solver.getEquilibriumAngleGradient(dMass, dX, dY);
+                break;
+            case MIN:
+                solver.getLevelXMinGradient(index, dMass, dX, dY);
+                break;
+            case ZERO:
+                solver.getLevelXZeroGradient(index, dMass, dX, dY);
+                break;
+            default:
+                solver.getLevelXMaxGradient(index, dMass, dX, dY);
+        }
+
+        for (int i = 0; i < COUNT; i++)
+        {
+            compare(output, index, masses, i, dMass[i]);
+            compare(output, index, relativeX, i, dX[i]);
+            compare(output, index, relativeY, i, dY[i]);
+        }
+    }
+
+    private void compare(int output, int index, double[] input, int i, double analytic)
+    {
+        double original = input[i];
+        double h = STEP * Math.max(1, Math.abs(original));
+
+        input[i] = original + h;
+        double plus = evaluate(output, index);
+        boolean plusLimited = isLimited(output, index);
+        input[i] = original - h;
+        double minus = evaluate(output, index);
+        boolean minusLimited = isLimited(output, index);
+        input[i] = original;
+
+        if (plusLimited != minusLimited)
+        {
+            skipped++;
+            return;
+        }
+
+        double numeric = (plus - minus) / (2 * h);
+        maxError = Math.max(maxError, Math.abs(analytic - numeric) / Math.max(1, Math.abs(numeric)));
+        compared++;
+    }
+
+    private double evaluate(int output, int index)
+    {
+        solver.solve(masses, relativeX, relativeY, COUNT);
+        switch (output)
+        {
+            case ANGLE:
+                return solver.getEquilibriumAngle();
+            case MIN:
+                return solver.getLevelXMin(index);
+            case ZERO:
+                return solver.getLevelXZero(index);
+            default:
+                return solver.getLevelXMax(index);
+        }
+    }
+
+    // whether the output is held by a hard stop or the end of the handle, where the gradient is zero
+    private boolean isLimited(int output, int index)
+    {
+        double value = evaluate(output, index);
+        double limit = output == ANGLE ? Constants.SWITCH_MAX_ANGLE : Constants.SWITCH_HANDLE_LENGTH / 2;
+        return Math.abs(value) >= limit;
+    }
+}
@@ -0,0 +1,12 @@
+package export;
+
+// minimal drawing target for switch diagrams, in pixels with y pointing down, colors as ARGB
+public interface DiagramSurface
+{
+    void line(double x1, double y1, double x2, double y2, int color, double width);
+
+    void fillCircle(double x, double y, double radius, int color);
+
+    // lines after a newline continue below, starting at the same x
+    void text(String text, double x, double y, int color);
+}
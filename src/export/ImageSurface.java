@@ -0,0 +1,68 @@
+package export;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+
+// draws into an AWT image, which works headless and from any thread
+public class ImageSurface implements DiagramSurface
+{
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private Line2D.Double line = new Line2D.Double();
+    private Ellipse2D.Double circle = new Ellipse2D.Double();
+
+    public ImageSurface(int width, int height)
+    {
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        clear();
+    }
+
+    // white, ready for the next diagram
+    public void clear()
+    {
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+    }
+
+    @Override
+    public void line(double x1, double y1, double x2, double y2, int color, double width)
+    {
+        graphics.setColor(new Color(color, true));
+        graphics.setStroke(new BasicStroke((float) width));
+        line.setLine(x1, y1, x2, y2);
+        graphics.draw(line);
+    }
+
+    @Override
+    public void fillCircle(double x, double y, double radius, int color)
+    {
+        graphics.setColor(new Color(color, true));
+        circle.setFrame(x - radius, y - radius, radius * 2, radius * 2);
+        graphics.fill(circle);
+    }
+
+    @Override
+    public void text(String text, double x, double y, int color)
+    {
+        graphics.setColor(new Color(color, true));
+        int lineHeight = graphics.getFontMetrics().getHeight();
+        String[] lines = text.split("\n", -1);
+        for (int i = 0; i < lines.length; i++)
+        {
+            graphics.drawString(lines[i], (float) x, (float) (y + i * lineHeight));
+        }
+    }
+
+    public BufferedImage getImage()
+    {
+        return image;
+    }
+}
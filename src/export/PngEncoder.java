@@ -0,0 +1,94 @@
+package export;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// RGB PNG writer tuned for diagrams: mostly flat color, so the sub filter and the fastest deflate level
+// compress nearly as well as ImageIO's defaults in a fraction of the time
+// one encoder per thread, buffers are reused between images
+public class PngEncoder
+{
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte FILTER_SUB = 1;
+
+    private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private ByteArrayOutputStream chunk = new ByteArrayOutputStream(1 << 16);
+    private CRC32 crc = new CRC32();
+    private byte[] row = new byte[0];
+
+    // image must be TYPE_INT_RGB, its pixels are read straight from the raster
+    public void write(BufferedImage image, OutputStream out) throws IOException
+    {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB)
+        {
+            throw new IllegalArgumentException("expected an RGB image, got type " + image.getType());
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        if (row.length < 1 + width * 3)
+        {
+            row = new byte[1 + width * 3];
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+
+        chunk.reset();
+        DataOutputStream header = new DataOutputStream(chunk);
+        header.writeInt(width);
+        header.writeInt(height);
+        header.writeByte(8); // bits per channel
+        header.writeByte(2); // RGB
+        header.writeByte(0); // deflate
+        header.writeByte(0); // adaptive filtering
+        header.writeByte(0); // not interlaced
+        writeChunk(data, "IHDR");
+
+        chunk.reset();
+        deflater.reset();
+        DeflaterOutputStream compressed = new DeflaterOutputStream(chunk, deflater, 1 << 16);
+        row[0] = FILTER_SUB;
+        for (int y = 0; y < height; y++)
+        {
+            int previous = 0;
+            for (int x = 0; x < width; x++)
+            {
+                int pixel = pixels[y * width + x];
+                row[1 + x * 3] = (byte) ((pixel >> 16) - (previous >> 16));
+                row[2 + x * 3] = (byte) ((pixel >> 8) - (previous >> 8));
+                row[3 + x * 3] = (byte) (pixel - previous);
+                previous = pixel;
+            }
+            compressed.write(row, 0, 1 + width * 3);
+        }
+        compressed.finish();
+        writeChunk(data, "IDAT");
+
+        chunk.reset();
+        writeChunk(data, "IEND");
+        data.flush();
+    }
+
+    // length, type, data, then the CRC of type and data
+    private void writeChunk(DataOutputStream data, String type) throws IOException
+    {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        data.writeInt(chunk.size());
+        data.write(typeBytes);
+        chunk.writeTo(data);
+
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(chunk.toByteArray());
+        data.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,79 @@
+package export;
+
+import java.util.Locale;
+
+// builds an SVG document as text
+public class SvgSurface implements DiagramSurface
+{
+    private static final double LINE_HEIGHT = 15;
+
+    private StringBuilder svg = new StringBuilder();
+    private int width;
+    private int height;
+
+    public SvgSurface(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        clear();
+    }
+
+    public void clear()
+    {
+        svg.setLength(0);
+        append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" font-family=\"sans-serif\" font-size=\"12\">\n", width, height);
+        append("<rect width=\"100%%\" height=\"100%%\" fill=\"white\"/>\n");
+    }
+
+    @Override
+    public void line(double x1, double y1, double x2, double y2, int color, double width)
+    {
+        append("<line x1=\"%.2f\" y1=\"%.2f\" x2=\"%.2f\" y2=\"%.2f\" stroke=\"%s\" stroke-opacity=\"%.2f\" stroke-width=\"%.1f\"/>\n",
+                x1, y1, x2, y2, rgb(color), alpha(color), width);
+    }
+
+    @Override
+    public void fillCircle(double x, double y, double radius, int color)
+    {
+        append("<circle cx=\"%.2f\" cy=\"%.2f\" r=\"%.1f\" fill=\"%s\" fill-opacity=\"%.2f\"/>\n", x, y, radius, rgb(color), alpha(color));
+    }
+
+    @Override
+    public void text(String text, double x, double y, int color)
+    {
+        append("<text x=\"%.2f\" y=\"%.2f\" fill=\"%s\">", x, y, rgb(color));
+        String[] lines = text.split("\n", -1);
+        for (int i = 0; i < lines.length; i++)
+        {
+            append("<tspan x=\"%.2f\" dy=\"%.0f\">%s</tspan>", x, i == 0 ? 0 : LINE_HEIGHT, escape(lines[i]));
+        }
+        svg.append("</text>\n");
+    }
+
+    // the finished document
+    public String toSvg()
+    {
+        return svg + "</svg>\n";
+    }
+
+    private void append(String format, Object... args)
+    {
+        // always a decimal point, whatever the default locale
+        svg.append(String.format(Locale.ROOT, format, args));
+    }
+
+    private static String rgb(int color)
+    {
+        return String.format("#%06x", color & 0xFFFFFF);
+    }
+
+    private static double alpha(int color)
+    {
+        return (color >>> 24) / 255.0;
+    }
+
+    private static String escape(String text)
+    {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,140 @@
+package export;
+
+import geometry.Rotation;
+import simulation.Constants;
+import simulation.SwitchSolver;
+
+// draws the same view as the GUI display for a solved configuration onto any surface, with no JavaFX involved
+// the canvas display draws through this too, so there is one renderer to keep in step with the scene graph display
+public class SwitchDiagram
+{
+    public static final int BLACK = 0xFF000000;
+    public static final int WHITE = 0xFFFFFFFF;
+
+    private static final int[] COLORS = {BLACK, 0xFFFF0000, 0xFF008000, 0xFF0000FF};
+
+    // switch outline in its own frame: pivot, then both ends of the rung
+    private static final double[] SWITCH_VERTEX_X = {0, -Constants.SWITCH_HANDLE_LENGTH / 2, Constants.SWITCH_HANDLE_LENGTH / 2};
+    private static final double[] SWITCH_VERTEX_Y = {0, -Constants.SWITCH_RUNG_PIVOT_DISTANCE, -Constants.SWITCH_RUNG_PIVOT_DISTANCE};
+
+    private double inchToPixel;
+    private double widthInches;
+    private double heightInches;
+    private Rotation rotation = new Rotation();
+
+    public SwitchDiagram(double inchToPixel, double widthInches, double heightInches)
+    {
+        this.inchToPixel = inchToPixel;
+        this.widthInches = widthInches;
+        this.heightInches = heightInches;
+    }
+
+    // the GUI canvas changes size and zoom while it is shown
+    public void setView(double inchToPixel, double widthInches, double heightInches)
+    {
+        this.inchToPixel = inchToPixel;
+        this.widthInches = widthInches;
+        this.heightInches = heightInches;
+    }
+
+    public int getPixelWidth()
+    {
+        return (int) Math.ceil(widthInches * inchToPixel);
+    }
+
+    public int getPixelHeight()
+    {
+        return (int) Math.ceil(heightInches * inchToPixel);
+    }
+
+    // index 0 of the solver is the switch's own mass, the rest are robots
+    public void draw(SwitchSolver solver, DiagramSurface surface)
+    {
+        draw(solver, null, null, surface);
+    }
+
+    // for robots carrying composite bodies, which the solver holds as one mass at the combined center of mass
+    // the offsets are from each robot's attachment point to that center, indexed like the solver, null for none
+    // robots and their level bounds are drawn at the attachment point, as the GUI's scene graph display does, and like
+    // it the weight is the whole body's and the moment arm is to its center of mass, so weight times arm is the torque
+    public void draw(SwitchSolver solver, double[] comOffsetX, double[] comOffsetY, DiagramSurface surface)
+    {
+        rotation.setAngle(solver.getEquilibriumAngle());
+
+        for (int i = 1; i < solver.getCount(); i++)
+        {
+            drawRobot(solver, surface, i, comOffsetX == null ? 0 : comOffsetX[i], comOffsetY == null ? 0 : comOffsetY[i]);
+        }
+
+        drawSwitch(solver, surface);
+
+        // COM
+        fillCircle(surface, solver.getComX(), solver.getComY(), 5, BLACK);
+    }
+
+    private void drawRobot(SwitchSolver solver, DiagramSurface surface, int index, double offsetX, double offsetY)
+    {
+        int color = COLORS[index % COLORS.length];
+
+        double mass = solver.getMass(index);
+        double comX = solver.getRelativeX(index);
+        double comY = solver.getRelativeY(index);
+        double x = comX - offsetX;
+        double y = comY - offsetY;
+        double levelXMin = solver.getLevelXMin(index, offsetX);
+        double levelXZero = solver.getLevelXZero(index, offsetX);
+        double levelXMax = solver.getLevelXMax(index, offsetX);
+
+        // ideal indicator, offset slightly per robot so they don't overlap
+        fillCircle(surface, levelXZero, y - index, 3, color);
+
+        // show robot if mass greater than zero or position is not zero
+        if (!(mass > 0 || x != 0))
+        {
+            return;
+        }
+
+        int toleranceColor = (color & 0x00FFFFFF) | 0x80000000;
+        surface.line(screenX(levelXMin, y - index), screenY(levelXMin, y - index),
+                screenX(levelXMax, y - index), screenY(levelXMax, y - index), toleranceColor, 2);
+
+        // vertical line with length proportional to robot weight
+        double robotX = screenX(x, y);
+        double robotY = screenY(x, y);
+        surface.line(robotX, robotY, robotX, robotY + mass, color, 2);
+
+        // the whole body's torque acts at its center of mass
+        double momentArm = rotation.rotateX(comX, comY);
+        surface.text(String.format("\nx: %.1f in\nx tol.: %+.1f %+.1f\nx ideal: %.1f (%+.1f)\nweight: %.1f lbs\nmoment arm: %.1f in\ntorque: %.1f in-lbs",
+                x, levelXMax - x, levelXMin - x, levelXZero, levelXZero - x, mass, momentArm, -mass * momentArm), robotX, robotY + mass, BLACK);
+    }
+
+    private void drawSwitch(SwitchSolver solver, DiagramSurface surface)
+    {
+        for (int i = 0; i < SWITCH_VERTEX_X.length; i++)
+        {
+            int next = (i + 1) % SWITCH_VERTEX_X.length;
+            surface.line(screenX(SWITCH_VERTEX_X[i], SWITCH_VERTEX_Y[i]), screenY(SWITCH_VERTEX_X[i], SWITCH_VERTEX_Y[i]),
+                    screenX(SWITCH_VERTEX_X[next], SWITCH_VERTEX_Y[next]), screenY(SWITCH_VERTEX_X[next], SWITCH_VERTEX_Y[next]), BLACK, 1);
+        }
+
+        surface.text(String.format("%.1f° (%s)", solver.getEquilibriumAngle() * 180 / Math.PI, solver.isLevel() ? "level" : "not level"),
+                screenX(0, 3), screenY(0, 3), BLACK);
+    }
+
+    private void fillCircle(DiagramSurface surface, double x, double y, double radius, int color)
+    {
+        surface.fillCircle(screenX(x, y), screenY(x, y), radius, color);
+    }
+
+    // switch frame to pixels, matching the GUI's bindNodeX and bindNodeY
+    private double screenX(double x, double y)
+    {
+        return (rotation.rotateX(x, y) + widthInches / 2) * inchToPixel;
+    }
+
+    private double screenY(double x, double y)
+    {
+        return (heightInches - (rotation.rotateY(x, y) + Constants.SWITCH_PIVOT_HEIGHT)) * inchToPixel;
+    }
+}
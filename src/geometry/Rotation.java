@@ -0,0 +1,36 @@
+package geometry;
+
+// counterclockwise rotation with its sine and cosine cached, so many points can share one evaluation
+// plain doubles instead of properties, for recompute paths that shouldn't allocate
+public class Rotation
+{
+    private double angle = 0;
+    private double sin = 0;
+    private double cos = 1;
+
+    // only recomputes the sine and cosine if the angle actually changed
+    public void setAngle(double angle)
+    {
+        if (angle != this.angle)
+        {
+            this.angle = angle;
+            sin = Math.sin(angle);
+            cos = Math.cos(angle);
+        }
+    }
+
+    public double getAngle()
+    {
+        return angle;
+    }
+
+    public double rotateX(double x, double y)
+    {
+        return x * cos - y * sin;
+    }
+
+    public double rotateY(double x, double y)
+    {
+        return x * sin + y * cos;
+    }
+}
@@ -0,0 +1,133 @@
+package gui;
+
+import export.SwitchDiagram;
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.DoubleProperty;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import simulation.PointMassOnSwitch;
+import simulation.SwitchSimulation;
+import simulation.SwitchSolver;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+// draws the same view as the scene graph display onto a single canvas, at most once per pulse,
+// reading the solver directly instead of going through per-node bindings
+// the drawing itself is SwitchDiagram's, shared with exported images
+class CanvasDisplay extends Canvas
+{
+    private SwitchSimulation simulation;
+    private SwitchSolver solver;
+    private SwitchDiagram diagram;
+    private GraphicsContextSurface surface;
+
+    // from each robot's attachment point to the center of mass of it and its body, refilled every frame
+    private double[] comOffsetX = new double[0];
+    private double[] comOffsetY = new double[0];
+    private DoubleProperty inchToPixel;
+    private DoubleProperty windowWidthInches;
+    private DoubleProperty windowHeightInches;
+
+    // solver modification count at the last redraw, and whether the view itself changed since
+    private long drawnModification = -1;
+    private boolean viewChanged = true;
+
+    private long frames;
+    private long skippedFrames;
+    private long lastFrameNanos;
+    private long lastFrameBytes;
+    private com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    CanvasDisplay(SwitchSimulation simulation, DoubleProperty inchToPixel, DoubleProperty windowWidthInches, DoubleProperty windowHeightInches)
+    {
+        this.simulation = simulation;
+        this.solver = simulation.getSolver();
+        this.inchToPixel = inchToPixel;
+        this.windowWidthInches = windowWidthInches;
+        this.windowHeightInches = windowHeightInches;
+        diagram = new SwitchDiagram(inchToPixel.get(), windowWidthInches.get(), windowHeightInches.get());
+        surface = new GraphicsContextSurface(getGraphicsContext2D());
+
+        widthProperty().bind(Bindings.multiply(windowWidthInches, inchToPixel));
+        heightProperty().bind(Bindings.multiply(windowHeightInches, inchToPixel));
+
+        InvalidationListener viewListener = o -> viewChanged = true;
+        widthProperty().addListener(viewListener);
+        heightProperty().addListener(viewListener);
+
+        new AnimationTimer()
+        {
+            @Override
+            public void handle(long now)
+            {
+                // solving pushes the simulation's angle into the solver, so the canvas agrees with isLevelProperty
+                simulation.equilibriumAngleProperty().get();
+
+                if (!viewChanged && solver.getModificationCount() == drawnModification)
+                {
+                    skippedFrames++;
+                    return;
+                }
+
+                long bytesBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                long start = System.nanoTime();
+                draw();
+                lastFrameNanos = System.nanoTime() - start;
+                lastFrameBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytesBefore;
+                frames++;
+            }
+        }.start();
+    }
+
+    private void draw()
+    {
+        drawnModification = solver.getModificationCount();
+        viewChanged = false;
+
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, getWidth(), getHeight());
+
+        diagram.setView(inchToPixel.get(), windowWidthInches.get(), windowHeightInches.get());
+        List<PointMassOnSwitch> pointMasses = simulation.getPointMasses();
+        if (comOffsetX.length < pointMasses.size())
+        {
+            comOffsetX = new double[pointMasses.size() * 2];
+            comOffsetY = new double[pointMasses.size() * 2];
+        }
+        for (int i = 0; i < pointMasses.size(); i++)
+        {
+            comOffsetX[i] = pointMasses.get(i).getComOffsetX();
+            comOffsetY[i] = pointMasses.get(i).getComOffsetY();
+        }
+        diagram.draw(solver, comOffsetX, comOffsetY, surface);
+
+        // frame statistics
+        gc.setFill(Color.GRAY);
+        gc.fillText(String.format("frame: %.3f ms, %d B, %d drawn, %d skipped", lastFrameNanos / 1e6, lastFrameBytes, frames, skippedFrames), 5, 15);
+    }
+
+    long getFrames()
+    {
+        return frames;
+    }
+
+    long getSkippedFrames()
+    {
+        return skippedFrames;
+    }
+
+    long getLastFrameNanos()
+    {
+        return lastFrameNanos;
+    }
+
+    long getLastFrameBytes()
+    {
+        return lastFrameBytes;
+    }
+}
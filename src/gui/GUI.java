@@ -1,7 +1,11 @@
 package gui;
 
+import analysis.MonteCarloLevelEstimator;
+import analysis.PlacementOptimizer;
 import geometry.Vector2D;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.binding.StringBinding;
@@ -9,10 +13,13 @@ import javafx.beans.binding.StringExpression;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.value.ObservableDoubleValue;
+import javafx.collections.ListChangeListener;
+import javafx.concurrent.Task;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Slider;
 import javafx.scene.layout.*;
@@ -21,22 +28,29 @@ import javafx.scene.shape.Circle;
 import javafx.scene.shape.Line;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
+import metrics.SolverMetrics;
 import simulation.Constants;
 import simulation.PointMassOnSwitch;
+import simulation.SwitchDynamics;
 import simulation.SwitchSimulation;
 
 import static gui.FXHelper.*;
 
 public class GUI extends Application
 {
+    private static final long LEVEL_PROBABILITY_SAMPLES = 10_000_000;
+
     private SwitchSimulation simulation = new SwitchSimulation();
     private DoubleProperty inchToPixel = new SimpleDoubleProperty(6);
     private DoubleProperty windowWidthInches = new SimpleDoubleProperty(150);
     private DoubleProperty windowHeightInches = new SimpleDoubleProperty(150);
+    private MonteCarloLevelEstimator estimator;
 
     @Override
     public void start(Stage stage)
     {
+        SolverMetrics.getInstance().registerMBean();
+
         stage.setTitle("FRC 2020 Generator Switch Simulation (by Justin Yao Du, 2473 Goldstrikers)");
         stage.setScene(new Scene(buildRoot()));
         stage.sizeToScene();
@@ -45,18 +59,229 @@ public class GUI extends Application
 
     private Parent buildRoot()
     {
-        return new BorderPane(buildDisplay(), null, null, null, buildSidebar());
+        // --canvas draws the display onto one canvas per pulse instead of binding scene graph nodes
+        Parent display = getParameters().getRaw().contains("--canvas") ? buildCanvasDisplay() : buildDisplay();
+        return new BorderPane(display, null, null, null, buildSidebar());
+    }
+
+    private Parent buildCanvasDisplay()
+    {
+        ScrollPane scrollPane = new ScrollPane(new CanvasDisplay(simulation, inchToPixel, windowWidthInches, windowHeightInches));
+        scrollPane.setPannable(true);
+
+        return scrollPane;
     }
 
     private Parent buildSidebar()
     {
-        return newVbox(buildRobotParameters());
+        VBox sidebar = newVbox(buildRobotParameters(), buildPlacement(), buildDynamics(), buildLevelProbability());
+        if (simulation.getPointMasses().size() > 2)
+        {
+            sidebar.getChildren().add(buildHeatmap());
+        }
+        return sidebar;
+    }
+
+    private Parent buildHeatmap()
+    {
+        Text legend = new Text("robot 1 x left to right, robot 2 x bottom to top\ngreen: level, red: clockwise, blue: counterclockwise");
+        return titledPane("Angle map", newVbox(new HeatmapView(simulation), legend));
+    }
+
+    // move every robot to the joint placement with the largest worst-case tolerance
+    private Parent buildPlacement()
+    {
+        Text result = new Text();
+        Button optimizeButton = new Button("Optimize placement");
+
+        optimizeButton.setOnAction(e ->
+        {
+            int robotCount = simulation.getPointMasses().size() - 1;
+            double[] positions = new double[robotCount];
+            double[] comOffsets = new double[robotCount];
+            for (int i = 0; i < robotCount; i++)
+            {
+                // the optimizer places centers of mass, which differ from attachment points for robots with bodies
+                PointMassOnSwitch robot = simulation.getPointMasses().get(i + 1);
+                comOffsets[i] = robot.getComOffsetX();
+                positions[i] = robot.getSwitchRelativePosition().xProperty().get() + comOffsets[i];
+            }
+            PlacementOptimizer optimizer = PlacementOptimizer.forSimulation(simulation);
+
+            // optimizing blocks until every start has finished, so it runs off the FX thread
+            Task<PlacementOptimizer.Placement> task = new Task<PlacementOptimizer.Placement>()
+            {
+                @Override
+                protected PlacementOptimizer.Placement call() throws InterruptedException
+                {
+                    return optimizer.optimize(positions);
+                }
+            };
+
+            task.setOnSucceeded(done ->
+            {
+                optimizeButton.setDisable(false);
+                PlacementOptimizer.Placement placement = task.getValue();
+
+                // robots may have been added or removed while optimizing
+                if (simulation.getPointMasses().size() - 1 != robotCount)
+                {
+                    result.setText("robots changed, optimize again");
+                    return;
+                }
+
+                for (int i = 0; i < robotCount; i++)
+                {
+                    simulation.getPointMasses().get(i + 1).getSwitchRelativePosition().xProperty().set(placement.getPosition(i) - comOffsets[i]);
+                }
+
+                // no robot has weight, so none of them has a tolerance to maximize
+                if (Double.isInfinite(placement.getWorstMargin()))
+                {
+                    result.setText("no robots with weight to place");
+                }
+                else
+                {
+                    result.setText(String.format("worst-case tolerance: %.1f in", placement.getWorstMargin()));
+                }
+            });
+            task.setOnFailed(done ->
+            {
+                optimizeButton.setDisable(false);
+                result.setText("optimization failed: " + task.getException().getMessage());
+            });
+
+            optimizeButton.setDisable(true);
+            result.setText("optimizing...");
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            thread.start();
+        });
+
+        GridPane controls = newGridPane();
+        controls.addRow(0, optimizeButton, result);
+
+        return titledPane("Placement", controls);
+    }
+
+    // Monte Carlo estimate of the chance of ending level when drivers and scales are off by a bit
+    private Parent buildLevelProbability()
+    {
+        DoubleProperty positionStdDev = new SimpleDoubleProperty(2);
+        DoubleProperty massStdDev = new SimpleDoubleProperty(3);
+        Text result = new Text();
+        Button estimateButton = new Button("Estimate");
+
+        estimateButton.setOnAction(e ->
+        {
+            if (estimator != null)
+            {
+                estimator.cancel();
+            }
+
+            int robotCount = simulation.getPointMasses().size() - 1;
+            double[] masses = new double[robotCount];
+            double[] positions = new double[robotCount];
+            double[] heights = new double[robotCount];
+            for (int i = 0; i < robotCount; i++)
+            {
+                // robots with bodies are sampled as one mass at their center of mass
+                PointMassOnSwitch robot = simulation.getPointMasses().get(i + 1);
+                masses[i] = robot.getTotalMass();
+                positions[i] = robot.getSwitchRelativePosition().xProperty().get() + robot.getComOffsetX();
+                heights[i] = robot.getSwitchRelativePosition().yProperty().get() + robot.getComOffsetY();
+            }
+
+            MonteCarloLevelEstimator current = new MonteCarloLevelEstimator(masses, positions, heights, positionStdDev.get(), massStdDev.get());
+            estimator = current;
+
+            Thread thread = new Thread(() ->
+            {
+                try
+                {
+                    current.run(LEVEL_PROBABILITY_SAMPLES, System.nanoTime(), estimate -> Platform.runLater(() ->
+                    {
+                        // a cancelled run's last update can arrive after a newer run has started
+                        if (estimator == current)
+                        {
+                            result.setText(String.format("%.2f%% (%.2f%% to %.2f%%), %d samples", estimate.getProbability() * 100,
+                                    estimate.getLowerBound() * 100, estimate.getUpperBound() * 100, estimate.getSamples()));
+                        }
+                    }));
+                } catch (InterruptedException ex)
+                {
+                    current.cancel();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        });
+
+        GridPane controls = newGridPane();
+        int row = 0;
+        controls.addRow(row++, new Text("Position std. dev. (in)"), new DoubleInput(positionStdDev));
+        controls.addRow(row++, new Text("Weight std. dev. (lbs)"), new DoubleInput(massStdDev));
+        controls.addRow(row++, estimateButton, result);
+
+        return titledPane("Level probability", controls);
+    }
+
+    // live readout of the switch swinging towards equilibrium, stepped at 1 kHz
+    private Parent buildDynamics()
+    {
+        SwitchDynamics dynamics = new SwitchDynamics();
+        dynamics.setConfiguration(simulation.getSolver());
+        dynamics.reset(simulation.equilibriumAngleProperty().get(), 0);
+
+        Text angleText = new Text();
+
+        Button dropButton = new Button("Release from hard stop");
+        dropButton.setOnAction(e -> dynamics.reset(-Math.copySign(Constants.SWITCH_MAX_ANGLE, simulation.equilibriumAngleProperty().get()), 0));
+
+        new AnimationTimer()
+        {
+            private long lastNanos = -1;
+
+            @Override
+            public void handle(long now)
+            {
+                dynamics.setConfiguration(simulation.getSolver());
+                if (lastNanos >= 0)
+                {
+                    // don't try to catch up after the window was stalled
+                    dynamics.advance(Math.min((now - lastNanos) / 1e9, 0.1));
+                }
+                lastNanos = now;
+
+                angleText.setText(String.format("%.1f° (%s), %.1f°/s", dynamics.getAngle() * 180 / Math.PI,
+                        dynamics.isLevel() ? "level" : "not level", dynamics.getAngularVelocity() * 180 / Math.PI));
+            }
+        }.start();
+
+        GridPane controls = newGridPane();
+        controls.addRow(0, new Text("Dynamic angle"), angleText);
+        controls.addRow(1, dropButton);
+
+        return titledPane("Dynamics", controls);
     }
 
     private Parent buildRobotParameters()
     {
         VBox parent = newVbox();
+        addRobotParameters(parent);
 
+        // rebuilt when point masses are added or removed, so every input edits the mass at its index
+        simulation.getPointMasses().addListener((ListChangeListener<PointMassOnSwitch>) c ->
+        {
+            parent.getChildren().clear();
+            addRobotParameters(parent);
+        });
+
+        return parent;
+    }
+
+    private void addRobotParameters(VBox parent)
+    {
         // skip first element, since that's the COM of the switch
         for (int i = 1; i < simulation.getPointMasses().size(); i++)
         {
@@ -77,8 +302,6 @@ public class GUI extends Application
 
             parent.getChildren().add(titledPane("Robot " + i, controls));
         }
-
-        return parent;
     }
 
     private Parent buildDisplay()
@@ -88,11 +311,15 @@ public class GUI extends Application
         pane.prefWidthProperty().bind(Bindings.multiply(windowWidthInches, inchToPixel));
         pane.prefHeightProperty().bind(Bindings.multiply(windowHeightInches, inchToPixel));
 
-        // add robots
-        for (int i = 1; i < simulation.getPointMasses().size(); i++)
+        // add robots, rebuilt when point masses are added or removed
+        Group robots = new Group();
+        addRobots(robots);
+        simulation.getPointMasses().addListener((ListChangeListener<PointMassOnSwitch>) c ->
         {
-            pane.getChildren().addAll(buildRobot(i));
-        }
+            robots.getChildren().clear();
+            addRobots(robots);
+        });
+        pane.getChildren().add(robots);
 
         // add switch
         pane.getChildren().addAll(buildSwitch());
@@ -102,7 +329,7 @@ public class GUI extends Application
 
         // add COM
         Circle com = new Circle(5, Color.BLACK);
-        PointMassOnSwitch comPosition = new PointMassOnSwitch(0, 0, 0, simulation.equilibriumAngleProperty());
+        PointMassOnSwitch comPosition = new PointMassOnSwitch(0, 0, 0, simulation.equilibriumAngleProperty(), simulation.getRotation());
         comPosition.getSwitchRelativePosition().xProperty().bind(simulation.comXProperty());
         comPosition.getSwitchRelativePosition().yProperty().bind(simulation.comYProperty());
         bindNodePosition(com, comPosition.getPosition());
@@ -114,6 +341,14 @@ public class GUI extends Application
         return scrollPane;
     }
 
+    private void addRobots(Group robots)
+    {
+        for (int i = 1; i < simulation.getPointMasses().size(); i++)
+        {
+            robots.getChildren().addAll(buildRobot(i));
+        }
+    }
+
     private Node[] buildRobot(int index)
     {
         Color[] colors = new Color[]{Color.BLACK, Color.RED, Color.GREEN, Color.BLUE};
@@ -129,14 +364,14 @@ public class GUI extends Application
         bindNodePosition(robotGroup, robot.getPosition());
 
         // show robot if mass greater than zero or position is not zero
-        robotGroup.visibleProperty().bind(Bindings.or(Bindings.greaterThan(robot.massProperty(), 0),
+        robotGroup.visibleProperty().bind(Bindings.or(Bindings.greaterThan(robot.totalMassProperty(), 0),
                 Bindings.notEqual(robot.getSwitchRelativePosition().xProperty(), 0)));
 
-        // draw a vertical line with length proportional to robot weight
+        // draw a vertical line with length proportional to robot weight, body included, as SwitchDiagram does
         Line line = new Line();
-        line.setStroke(colors[index]);
+        line.setStroke(color);
         line.setStrokeWidth(2);
-        line.endYProperty().bind(robot.massProperty());
+        line.endYProperty().bind(robot.totalMassProperty());
         robotGroup.getChildren().add(line);
 
         StringExpression tolerances = Bindings.format("%+.1f %+.1f",
@@ -146,17 +381,17 @@ public class GUI extends Application
         StringExpression ideal = Bindings.format("%.1f (%+.1f)", levelXZero,
                 levelXZero.subtract(robot.getSwitchRelativePosition().xProperty()));
 
-        PointMassOnSwitch idealPosition = new PointMassOnSwitch(0, 0, 0, simulation.equilibriumAngleProperty());
+        PointMassOnSwitch idealPosition = new PointMassOnSwitch(0, 0, 0, simulation.equilibriumAngleProperty(), simulation.getRotation());
         idealPosition.getSwitchRelativePosition().xProperty().bind(levelXZero);
         idealPosition.getSwitchRelativePosition().yProperty().bind(robot.getSwitchRelativePosition().yProperty().subtract(index));
         Circle idealIndicator = new Circle(3, color);
         bindNodePosition(idealIndicator, idealPosition.getPosition());
 
-        PointMassOnSwitch minEndpoint = new PointMassOnSwitch(0, 0, 0, simulation.equilibriumAngleProperty());
+        PointMassOnSwitch minEndpoint = new PointMassOnSwitch(0, 0, 0, simulation.equilibriumAngleProperty(), simulation.getRotation());
         minEndpoint.getSwitchRelativePosition().xProperty().bind(levelXMin);
         minEndpoint.getSwitchRelativePosition().yProperty().bind(idealPosition.getSwitchRelativePosition().yProperty());
 
-        PointMassOnSwitch maxEndpoint = new PointMassOnSwitch(0, 0, 0, simulation.equilibriumAngleProperty());
+        PointMassOnSwitch maxEndpoint = new PointMassOnSwitch(0, 0, 0, simulation.equilibriumAngleProperty(), simulation.getRotation());
         maxEndpoint.getSwitchRelativePosition().xProperty().bind(levelXMax);
         maxEndpoint.getSwitchRelativePosition().yProperty().bind(idealPosition.getSwitchRelativePosition().yProperty());
 
@@ -169,7 +404,7 @@ public class GUI extends Application
 
         Text label = new Text();
         label.textProperty().bind(Bindings.format("\nx: %.1f in\nx tol.: %s\nx ideal: %s\nweight: %.1f lbs\nmoment arm: %.1f in\ntorque: %.1f in-lbs",
-                robot.getSwitchRelativePosition().xProperty(), tolerances, ideal, robot.massProperty(), robot.getPosition().xProperty(), robot.torqueProperty()));
+                robot.getSwitchRelativePosition().xProperty(), tolerances, ideal, robot.totalMassProperty(), robot.momentArmProperty(), robot.torqueProperty()));
         label.layoutYProperty().bind(line.endYProperty());
         robotGroup.getChildren().add(label);
 
@@ -197,7 +432,7 @@ public class GUI extends Application
         // convert to absolute coordinates
         for (int i = 0; i < vertices.length; i++)
         {
-            vertices[i] = new PointMassOnSwitch(vertices[i].xProperty().get(), vertices[i].yProperty().get(), 0, simulation.equilibriumAngleProperty()).getPosition();
+            vertices[i] = new PointMassOnSwitch(vertices[i].xProperty().get(), vertices[i].yProperty().get(), 0, simulation.equilibriumAngleProperty(), simulation.getRotation()).getPosition();
         }
 
         // create nodes for each vertex
@@ -225,7 +460,7 @@ public class GUI extends Application
     private Node buildSwitchText()
     {
         Text text = new Text();
-        bindNodePosition(text, new PointMassOnSwitch(0, 3, 0, simulation.equilibriumAngleProperty()).getPosition());
+        bindNodePosition(text, new PointMassOnSwitch(0, 3, 0, simulation.equilibriumAngleProperty(), simulation.getRotation()).getPosition());
 
         StringExpression angleString = Bindings.format("%.1f°", simulation.equilibriumAngleProperty().multiply(180).divide(Math.PI));
         StringExpression levelString = new StringBinding()
@@ -0,0 +1,53 @@
+package gui;
+
+import export.DiagramSurface;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+// lets SwitchDiagram draw onto a JavaFX canvas, so the canvas display and exported images share one renderer
+class GraphicsContextSurface implements DiagramSurface
+{
+    private GraphicsContext gc;
+
+    // diagrams use a handful of colors, so the last one converted is kept instead of allocating one per call
+    private int lastArgb;
+    private Color lastColor;
+
+    GraphicsContextSurface(GraphicsContext gc)
+    {
+        this.gc = gc;
+    }
+
+    @Override
+    public void line(double x1, double y1, double x2, double y2, int color, double width)
+    {
+        gc.setStroke(color(color));
+        gc.setLineWidth(width);
+        gc.strokeLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void fillCircle(double x, double y, double radius, int color)
+    {
+        gc.setFill(color(color));
+        gc.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+    }
+
+    // fillText already continues lines after a newline at the same x
+    @Override
+    public void text(String text, double x, double y, int color)
+    {
+        gc.setFill(color(color));
+        gc.fillText(text, x, y);
+    }
+
+    private Color color(int argb)
+    {
+        if (lastColor == null || argb != lastArgb)
+        {
+            lastArgb = argb;
+            lastColor = Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, ((argb >>> 24) & 0xFF) / 255.0);
+        }
+        return lastColor;
+    }
+}
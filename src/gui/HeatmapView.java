@@ -0,0 +1,232 @@
+package gui;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import simulation.Constants;
+import simulation.PointMassOnSwitch;
+import simulation.SwitchSimulation;
+import simulation.SwitchSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// map of the equilibrium angle over robot 1's x (left to right) against robot 2's x (bottom to top), for the
+// current weights and bodies and the other point masses where they are
+// tiles are computed on the fork-join pool and drawn as they finish, in passes from coarse to fine blocks, and any
+// change to the inputs abandons the passes in flight and starts over, so the FX thread only ever copies pixels
+class HeatmapView extends Canvas
+{
+    private static final int SIZE = 256;
+    private static final int TILE = 64;
+    private static final int TILES = SIZE / TILE;
+    private static final int[] BLOCKS = {16, 8, 4, 2, 1};
+    private static final double HALF_LENGTH = Constants.SWITCH_HANDLE_LENGTH / 2;
+
+    private SwitchSimulation simulation;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private WritableImage image = new WritableImage(SIZE, SIZE);
+
+    // bumped on every input change, tasks from older generations stop and their pixels are dropped
+    private volatile int generation;
+
+    // finest block drawn so far in each tile, so a late coarse tile never overwrites a fine one, FX thread only
+    private int[] drawnBlock = new int[TILES * TILES];
+
+    private InvalidationListener restart = o -> restart();
+    private InvalidationListener redraw = o -> redraw();
+
+    // robots the listeners are attached to, moved over whenever point masses are added or removed
+    private List<PointMassOnSwitch> watched = new ArrayList<>();
+
+    HeatmapView(SwitchSimulation simulation)
+    {
+        super(SIZE, SIZE);
+        this.simulation = simulation;
+
+        simulation.getPointMasses().addListener((ListChangeListener<PointMassOnSwitch>) c ->
+        {
+            watchRobots();
+            restart();
+        });
+
+        watchRobots();
+        restart();
+    }
+
+    private void watchRobots()
+    {
+        for (int i = 0; i < watched.size(); i++)
+        {
+            watched.get(i).massProperty().removeListener(restart);
+            watched.get(i).getBody().removeListener(restart);
+            watched.get(i).getSwitchRelativePosition().xProperty().removeListener(i < 2 ? redraw : restart);
+        }
+        watched.clear();
+
+        List<PointMassOnSwitch> pointMasses = simulation.getPointMasses();
+        for (int i = 1; i < pointMasses.size(); i++)
+        {
+            pointMasses.get(i).massProperty().addListener(restart);
+            pointMasses.get(i).getBody().addListener(restart);
+
+            // robots 1 and 2 are the map's axes, moving them only moves the marker
+            pointMasses.get(i).getSwitchRelativePosition().xProperty().addListener(i <= 2 ? redraw : restart);
+            watched.add(pointMasses.get(i));
+        }
+    }
+
+    private void restart()
+    {
+        int current = ++generation;
+        for (int i = 0; i < drawnBlock.length; i++)
+        {
+            drawnBlock[i] = Integer.MAX_VALUE;
+        }
+
+        // inputs are copied here on the FX thread, workers never touch the simulation
+        List<PointMassOnSwitch> pointMasses = simulation.getPointMasses();
+        int robotCount = pointMasses.size() - 1;
+        if (robotCount < 2)
+        {
+            // no axes to map, leave the map blank
+            image = new WritableImage(SIZE, SIZE);
+            redraw();
+            return;
+        }
+
+        MapInputs inputs = new MapInputs(pointMasses);
+        for (int block : BLOCKS)
+        {
+            for (int tile = 0; tile < TILES * TILES; tile++)
+            {
+                int tileIndex = tile;
+                pool.execute(() -> computeTile(current, tileIndex, block, inputs));
+            }
+        }
+    }
+
+    // everything but the two axes reduced to sums, with every point mass and composite body at its center of mass
+    private static class MapInputs
+    {
+        private double totalMass;
+        private double sumMassY;
+        private double otherSumMassX;
+        private double[] axisMass = new double[2];
+        private double[] axisOffset = new double[2];
+
+        MapInputs(List<PointMassOnSwitch> pointMasses)
+        {
+            for (int i = 0; i < pointMasses.size(); i++)
+            {
+                PointMassOnSwitch pointMass = pointMasses.get(i);
+                double mass = pointMass.getTotalMass();
+                double comX = pointMass.getSwitchRelativePosition().xProperty().get() + pointMass.getComOffsetX();
+                double comY = pointMass.getSwitchRelativePosition().yProperty().get() + pointMass.getComOffsetY();
+                totalMass += mass;
+                sumMassY += mass * comY;
+                if (i == 1 || i == 2)
+                {
+                    axisMass[i - 1] = mass;
+                    axisOffset[i - 1] = pointMass.getComOffsetX();
+                }
+                else
+                {
+                    otherSumMassX += mass * comX;
+                }
+            }
+        }
+
+        // attachment points of robots 1 and 2 along the handle
+        double angle(double x1, double x2)
+        {
+            double sumMassX = otherSumMassX + axisMass[0] * (x1 + axisOffset[0]) + axisMass[1] * (x2 + axisOffset[1]);
+            return SwitchSolver.equilibriumAngle(sumMassX / totalMass, sumMassY / totalMass);
+        }
+    }
+
+    private void computeTile(int tileGeneration, int tile, int block, MapInputs inputs)
+    {
+        if (tileGeneration != generation)
+        {
+            return;
+        }
+
+        int tileX = tile % TILES * TILE;
+        int tileY = tile / TILES * TILE;
+        int[] pixels = new int[TILE * TILE];
+        for (int y = 0; y < TILE; y += block)
+        {
+            if (tileGeneration != generation)
+            {
+                return;
+            }
+
+            // sample at the block's center, top of the image is the top of the handle
+            double x2 = HALF_LENGTH - (tileY + y + block / 2.0) / SIZE * Constants.SWITCH_HANDLE_LENGTH;
+            for (int x = 0; x < TILE; x += block)
+            {
+                double x1 = (tileX + x + block / 2.0) / SIZE * Constants.SWITCH_HANDLE_LENGTH - HALF_LENGTH;
+                int color = color(inputs.angle(x1, x2));
+                for (int row = y; row < y + block; row++)
+                {
+                    for (int column = x; column < x + block; column++)
+                    {
+                        pixels[row * TILE + column] = color;
+                    }
+                }
+            }
+        }
+
+        Platform.runLater(() ->
+        {
+            if (tileGeneration != generation || block > drawnBlock[tile])
+            {
+                return;
+            }
+            drawnBlock[tile] = block;
+            image.getPixelWriter().setPixels(tileX, tileY, TILE, TILE, PixelFormat.getIntArgbInstance(), pixels, 0, TILE);
+            redraw();
+        });
+    }
+
+    // green inside the level band, shading to red for clockwise and blue for counterclockwise towards the hard stops
+    private static int color(double angle)
+    {
+        double magnitude = Math.min(1, Math.abs(angle) / Constants.SWITCH_MAX_ANGLE);
+        if (SwitchSolver.isLevel(angle))
+        {
+            int green = (int) (255 - 100 * magnitude);
+            return 0xFF000000 | (60 << 16) | (green << 8) | 60;
+        }
+
+        int shade = (int) (255 * (1 - magnitude * 0.8));
+        return angle < 0 ? 0xFF000000 | (255 << 16) | (shade << 8) | shade : 0xFF000000 | (shade << 16) | (shade << 8) | 255;
+    }
+
+    // the map, with a marker where robots 1 and 2 currently are
+    private void redraw()
+    {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, SIZE, SIZE);
+        gc.drawImage(image, 0, 0);
+
+        List<PointMassOnSwitch> pointMasses = simulation.getPointMasses();
+        if (pointMasses.size() < 3)
+        {
+            return;
+        }
+        double x = (pointMasses.get(1).getSwitchRelativePosition().xProperty().get() + HALF_LENGTH) / Constants.SWITCH_HANDLE_LENGTH * SIZE;
+        double y = (HALF_LENGTH - pointMasses.get(2).getSwitchRelativePosition().xProperty().get()) / Constants.SWITCH_HANDLE_LENGTH * SIZE;
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(1);
+        gc.strokeLine(x - 6, y, x + 6, y);
+        gc.strokeLine(x, y - 6, x, y + 6);
+    }
+}
@@ -0,0 +1,13 @@
+package metrics;
+
+// implemented by caches that report their statistics through SolverMetrics
+public interface CacheStatistics
+{
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    int size();
+}
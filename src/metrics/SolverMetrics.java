@@ -0,0 +1,306 @@
+package metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// process-wide counters and latency histograms for the solver and everything built on it
+// recording only touches striped counters, so it is cheap enough to leave on during sweeps
+public class SolverMetrics implements SolverMetricsMBean
+{
+    public static final String OBJECT_NAME = "simulation:type=SolverMetrics";
+
+    private static final SolverMetrics INSTANCE = new SolverMetrics();
+
+    private volatile boolean enabled = true;
+
+    private LongAdder angleRecomputations = new LongAdder();
+    private LongAdder levelBoundRecomputations = new LongAdder();
+    private LatencyHistogram solveLatency = new LatencyHistogram();
+
+    // batches are leaves of parallel sweeps and batch runs, timed as a whole instead of per row
+    private LatencyHistogram batchLatency = new LatencyHistogram();
+    private LongAdder batchRows = new LongAdder();
+    private LongAdder batchNanos = new LongAdder();
+
+    // weakly held, so registering a cache doesn't keep it alive after its owner is done with it
+    private Map<String, WeakReference<CacheStatistics>> caches = new ConcurrentSkipListMap<>();
+
+    private SolverMetrics()
+    {
+    }
+
+    public static SolverMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    // publishes the metrics on the platform MBean server, does nothing if they already are
+    public void registerMBean()
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e)
+        {
+            // already registered
+        } catch (JMException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // callers check this before reading the clock, so disabled metrics cost one volatile read
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public void recordAngleRecomputation()
+    {
+        angleRecomputations.increment();
+    }
+
+    public void recordLevelBoundRecomputation()
+    {
+        levelBoundRecomputations.increment();
+    }
+
+    public void recordSolve(long nanos)
+    {
+        solveLatency.record(nanos);
+    }
+
+    public void recordBatch(long rows, long nanos)
+    {
+        batchLatency.record(nanos);
+        batchRows.add(rows);
+        batchNanos.add(nanos);
+    }
+
+    public void registerCache(String name, CacheStatistics cache)
+    {
+        caches.put(name, new WeakReference<>(cache));
+    }
+
+    public void unregisterCache(String name)
+    {
+        caches.remove(name);
+    }
+
+    @Override
+    public long getEquilibriumAngleRecomputations()
+    {
+        return angleRecomputations.sum();
+    }
+
+    @Override
+    public long getLevelBoundRecomputations()
+    {
+        return levelBoundRecomputations.sum();
+    }
+
+    @Override
+    public long getSolveCount()
+    {
+        return solveLatency.getCount();
+    }
+
+    @Override
+    public double getSolveLatencyP50()
+    {
+        return solveLatency.getPercentile(0.5) / 1e3;
+    }
+
+    @Override
+    public double getSolveLatencyP99()
+    {
+        return solveLatency.getPercentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getSolveLatencyP999()
+    {
+        return solveLatency.getPercentile(0.999) / 1e3;
+    }
+
+    @Override
+    public double getSolveLatencyMax()
+    {
+        return solveLatency.getMaxNanos() / 1e3;
+    }
+
+    public LatencyHistogram getSolveLatency()
+    {
+        return solveLatency;
+    }
+
+    @Override
+    public long getBatchCount()
+    {
+        return batchLatency.getCount();
+    }
+
+    @Override
+    public long getBatchRows()
+    {
+        return batchRows.sum();
+    }
+
+    @Override
+    public double getBatchLatencyP50()
+    {
+        return batchLatency.getPercentile(0.5) / 1e3;
+    }
+
+    @Override
+    public double getBatchLatencyP99()
+    {
+        return batchLatency.getPercentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getBatchLatencyP999()
+    {
+        return batchLatency.getPercentile(0.999) / 1e3;
+    }
+
+    public LatencyHistogram getBatchLatency()
+    {
+        return batchLatency;
+    }
+
+    // rows per second of time spent in batches, summed over threads, so per thread rather than wall clock
+    @Override
+    public double getBatchThroughput()
+    {
+        long nanos = batchNanos.sum();
+        return nanos == 0 ? 0 : batchRows.sum() * 1e9 / nanos;
+    }
+
+    // caches still alive, in name order, dropping the ones that were collected
+    private Map<String, CacheStatistics> liveCaches()
+    {
+        Map<String, CacheStatistics> live = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, WeakReference<CacheStatistics>>> entries = caches.entrySet().iterator();
+        while (entries.hasNext())
+        {
+            Map.Entry<String, WeakReference<CacheStatistics>> entry = entries.next();
+            CacheStatistics cache = entry.getValue().get();
+            if (cache == null)
+            {
+                entries.remove();
+            }
+            else
+            {
+                live.put(entry.getKey(), cache);
+            }
+        }
+        return live;
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        long hits = 0;
+        for (CacheStatistics cache : liveCaches().values())
+        {
+            hits += cache.getHitCount();
+        }
+        return hits;
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        long misses = 0;
+        for (CacheStatistics cache : liveCaches().values())
+        {
+            misses += cache.getMissCount();
+        }
+        return misses;
+    }
+
+    @Override
+    public long getCacheEvictions()
+    {
+        long evictions = 0;
+        for (CacheStatistics cache : liveCaches().values())
+        {
+            evictions += cache.getEvictionCount();
+        }
+        return evictions;
+    }
+
+    @Override
+    public long getCacheSize()
+    {
+        long size = 0;
+        for (CacheStatistics cache : liveCaches().values())
+        {
+            size += cache.size();
+        }
+        return size;
+    }
+
+    @Override
+    public double getCacheHitRatio()
+    {
+        long hits = getCacheHits();
+        long lookups = hits + getCacheMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String snapshot()
+    {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("equilibrium angle recomputations: %d%n", getEquilibriumAngleRecomputations()));
+        text.append(String.format("level bound recomputations: %d%n", getLevelBoundRecomputations()));
+        appendHistogram(text, "solve", solveLatency);
+        appendHistogram(text, "batch", batchLatency);
+        text.append(String.format("batch rows: %d, throughput: %.0f rows/s%n", getBatchRows(), getBatchThroughput()));
+        text.append(String.format("caches: %d hits, %d misses, %d evictions, %d entries, hit ratio %.3f%n",
+                getCacheHits(), getCacheMisses(), getCacheEvictions(), getCacheSize(), getCacheHitRatio()));
+        for (Map.Entry<String, CacheStatistics> entry : liveCaches().entrySet())
+        {
+            CacheStatistics cache = entry.getValue();
+            text.append(String.format("cache %s: %d hits, %d misses, %d evictions, %d entries%n",
+                    entry.getKey(), cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount(), cache.size()));
+        }
+        return text.toString();
+    }
+
+    private static void appendHistogram(StringBuilder text, String name, LatencyHistogram histogram)
+    {
+        text.append(String.format("%s latency: %d samples, mean %.3f us, p50 %.3f us, p99 %.3f us, p999 %.3f us, max %.3f us%n",
+                name, histogram.getCount(), histogram.getMeanNanos() / 1e3, histogram.getPercentile(0.5) / 1e3,
+                histogram.getPercentile(0.99) / 1e3, histogram.getPercentile(0.999) / 1e3, histogram.getMaxNanos() / 1e3));
+    }
+
+    // cache statistics belong to the caches and are left alone
+    @Override
+    public void reset()
+    {
+        angleRecomputations.reset();
+        levelBoundRecomputations.reset();
+        solveLatency.reset();
+        batchLatency.reset();
+        batchRows.reset();
+        batchNanos.reset();
+    }
+}
@@ -0,0 +1,49 @@
+package metrics;
+
+// management interface of SolverMetrics, latencies in microseconds
+public interface SolverMetricsMBean
+{
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getEquilibriumAngleRecomputations();
+
+    long getLevelBoundRecomputations();
+
+    long getSolveCount();
+
+    double getSolveLatencyP50();
+
+    double getSolveLatencyP99();
+
+    double getSolveLatencyP999();
+
+    double getSolveLatencyMax();
+
+    long getBatchCount();
+
+    long getBatchRows();
+
+    double getBatchLatencyP50();
+
+    double getBatchLatencyP99();
+
+    double getBatchLatencyP999();
+
+    double getBatchThroughput();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    long getCacheSize();
+
+    double getCacheHitRatio();
+
+    String snapshot();
+
+    void reset();
+}
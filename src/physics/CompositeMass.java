@@ -0,0 +1,191 @@
+package physics;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.WeakListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// point mass with child point masses hanging off it, for bodies whose mass is spread out, like a robot carrying game
+// pieces or a buddy platform
+// every node's position is an offset from its parent's position along the same axes, nodes don't rotate relative to
+// each other, so for a body on the switch every offset and moment is along the switch's axes
+// the total mass and first moments of every subtree are cached, a change only recomputes the subtrees on its path
+// to the root, and an unchanged subtree costs the same as a single point mass however detailed it is
+public class CompositeMass extends PointMass implements Observable
+{
+    private CompositeMass parent;
+    private List<CompositeMass> children = new ArrayList<>();
+    private List<InvalidationListener> listeners;
+
+    // cached aggregates of this subtree, moments about this node's own position along the shared axes
+    private boolean valid = false;
+    private double totalMass;
+    private double innerMomentX;
+    private double innerMomentY;
+
+    private InvalidationListener changeListener = o -> invalidate();
+
+    public CompositeMass(double x, double y, double mass)
+    {
+        super(x, y, mass);
+
+        massProperty().addListener(changeListener);
+        getPosition().xProperty().addListener(changeListener);
+        getPosition().yProperty().addListener(changeListener);
+    }
+
+    public CompositeMass addChild(double x, double y, double mass)
+    {
+        CompositeMass child = new CompositeMass(x, y, mass);
+        addChild(child);
+        return child;
+    }
+
+    public void addChild(CompositeMass child)
+    {
+        if (child.parent != null)
+        {
+            throw new IllegalArgumentException("mass already belongs to another body");
+        }
+        for (CompositeMass node = this; node != null; node = node.parent)
+        {
+            if (node == child)
+            {
+                throw new IllegalArgumentException("a body can't contain itself");
+            }
+        }
+
+        child.parent = this;
+        children.add(child);
+        invalidate();
+    }
+
+    public void removeChild(CompositeMass child)
+    {
+        if (child.parent != this || !children.remove(child))
+        {
+            throw new IllegalArgumentException("mass is not a child of this body");
+        }
+
+        child.parent = null;
+        invalidate();
+    }
+
+    public List<CompositeMass> getChildren()
+    {
+        return Collections.unmodifiableList(children);
+    }
+
+    public CompositeMass getParent()
+    {
+        return parent;
+    }
+
+    // mass of this node and everything below it
+    public double getTotalMass()
+    {
+        validate();
+        return totalMass;
+    }
+
+    // first moments of the subtree about the parent's position, along the shared axes, so a parent only needs these
+    // from each child, for the root of a robot's body that is about the robot's attachment point in the switch frame
+    public double getMomentX()
+    {
+        validate();
+        return innerMomentX + totalMass * getPosition().xProperty().get();
+    }
+
+    public double getMomentY()
+    {
+        validate();
+        return innerMomentY + totalMass * getPosition().yProperty().get();
+    }
+
+    // center of mass of the subtree as an offset from the parent's position, this node's position if it has no mass
+    public double getComX()
+    {
+        validate();
+        return totalMass == 0 ? getPosition().xProperty().get() : getMomentX() / totalMass;
+    }
+
+    public double getComY()
+    {
+        validate();
+        return totalMass == 0 ? getPosition().yProperty().get() : getMomentY() / totalMass;
+    }
+
+    // only descends into children that changed since they were last summed
+    private void validate()
+    {
+        if (valid)
+        {
+            return;
+        }
+
+        totalMass = massProperty().get();
+        innerMomentX = 0;
+        innerMomentY = 0;
+        for (CompositeMass child : children)
+        {
+            totalMass += child.getTotalMass();
+            innerMomentX += child.getMomentX();
+            innerMomentY += child.getMomentY();
+        }
+        valid = true;
+    }
+
+    // an invalid node's ancestors are always invalid too, so the walk stops at the first one already invalid
+    private void invalidate()
+    {
+        for (CompositeMass node = this; node != null && node.valid; node = node.parent)
+        {
+            node.valid = false;
+            node.fireInvalidated();
+        }
+    }
+
+    private void fireInvalidated()
+    {
+        if (listeners == null)
+        {
+            return;
+        }
+
+        // copy, listeners may remove themselves or read the aggregates while being notified
+        for (InvalidationListener listener : listeners.toArray(new InvalidationListener[0]))
+        {
+            if (listener instanceof WeakListener && ((WeakListener) listener).wasGarbageCollected())
+            {
+                listeners.remove(listener);
+            }
+            else
+            {
+                listener.invalidated(this);
+            }
+        }
+    }
+
+    // notified when the mass or position of this node or anything below it changes, once until the aggregates are read
+    @Override
+    public void addListener(InvalidationListener listener)
+    {
+        if (listeners == null)
+        {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(InvalidationListener listener)
+    {
+        if (listeners != null)
+        {
+            listeners.remove(listener);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package simulation;
+
+// finds the stable equilibrium angle of any torque model between the hard stops, by Newton's method
+// safeguarded with bisection, warm-started from the previous solution so small changes take one or two iterations
+public class EquilibriumSolver
+{
+    private static final int MAX_ITERATIONS = 100;
+
+    private double precision;
+    private double angle = 0;
+
+    private int lastIterations;
+    private long totalIterations;
+    private long solveCount;
+
+    public EquilibriumSolver(double precision)
+    {
+        setPrecision(precision);
+    }
+
+    // radians, solving stops once a step is smaller than this
+    public void setPrecision(double precision)
+    {
+        if (!(precision > 0))
+        {
+            throw new IllegalArgumentException("precision must be positive, got " + precision);
+        }
+        this.precision = precision;
+    }
+
+    public double getPrecision()
+    {
+        return precision;
+    }
+
+    // starts from the previous solution
+    public double solve(TorqueModel model)
+    {
+        return solve(model, angle);
+    }
+
+    public double solve(TorqueModel model, double initialAngle)
+    {
+        double min = -Constants.SWITCH_MAX_ANGLE;
+        double max = Constants.SWITCH_MAX_ANGLE;
+        int iterations = 0;
+
+        // a stable equilibrium has the torque going from counterclockwise to clockwise as the angle increases,
+        // if there is none between the stops the switch rests against the one the torque pushes it into
+        double minTorque = model.torque(min);
+        double maxTorque = model.torque(max);
+        if (minTorque <= 0 || maxTorque >= 0)
+        {
+            if (minTorque <= 0 && maxTorque >= 0)
+            {
+                // unstable in between, falls to whichever side it starts on
+                angle = model.torque(clamp(initialAngle)) < 0 ? min : max;
+            }
+            else
+            {
+                angle = minTorque <= 0 ? min : max;
+            }
+            finish(0);
+            return angle;
+        }
+
+        // bracket with positive torque at low and negative torque at high
+        double low = min;
+        double high = max;
+        double x = clamp(initialAngle);
+        if (Double.isNaN(x))
+        {
+            x = 0;
+        }
+
+        while (iterations < MAX_ITERATIONS)
+        {
+            iterations++;
+            double torque = model.torque(x);
+            double derivative = model.torqueDerivative(x);
+
+            if (torque > 0)
+            {
+                low = x;
+            }
+            else if (torque < 0)
+            {
+                high = x;
+            }
+            else
+            {
+                break;
+            }
+
+            double next = x - torque / derivative;
+            if (!(next > low && next < high))
+            {
+                // Newton left the bracket or the derivative vanished
+                next = (low + high) / 2;
+            }
+
+            double step = next - x;
+            x = next;
+            if (Math.abs(step) < precision || high - low < precision)
+            {
+                break;
+            }
+        }
+
+        angle = x;
+        finish(iterations);
+        return angle;
+    }
+
+    private void finish(int iterations)
+    {
+        lastIterations = iterations;
+        totalIterations += iterations;
+        solveCount++;
+    }
+
+    private static double clamp(double angle)
+    {
+        return Math.max(-Constants.SWITCH_MAX_ANGLE, Math.min(Constants.SWITCH_MAX_ANGLE, angle));
+    }
+
+    public double getAngle()
+    {
+        return angle;
+    }
+
+    // torque evaluations in the last solve, not counting the two at the hard stops
+    public int getLastIterations()
+    {
+        return lastIterations;
+    }
+
+    public long getTotalIterations()
+    {
+        return totalIterations;
+    }
+
+    public long getSolveCount()
+    {
+        return solveCount;
+    }
+}
@@ -1,22 +1,37 @@
 package simulation;
 
+import geometry.Rotation;
 import geometry.Vector2D;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.value.ObservableDoubleValue;
+import physics.CompositeMass;
 import physics.PointMass;
 
 public class PointMassOnSwitch extends PointMass
 {
     private Vector2D switchRelativePosition;
     private ObservableDoubleValue switchAngleReference;
-    private DoubleBinding torque = massProperty().multiply(getPosition().xProperty()).multiply(-1);
+    private Rotation rotation;
+    private DoubleBinding torque;
+    private DoubleBinding totalMass;
+    private DoubleBinding momentArm;
+
+    // anything else the robot carries, positions relative to this point, massless and empty for a plain point mass
+    private CompositeMass body = new CompositeMass(0, 0, 0);
 
     public PointMassOnSwitch(double relativeX, double relativeY, double mass, ObservableDoubleValue switchAngleReference)
+    {
+        this(relativeX, relativeY, mass, switchAngleReference, new Rotation());
+    }
+
+    // point masses on the same switch can share one rotation, so the sine and cosine are computed once per angle
+    public PointMassOnSwitch(double relativeX, double relativeY, double mass, ObservableDoubleValue switchAngleReference, Rotation rotation)
     {
         // don't initialize position yet
         super(0, 0, mass);
 
         this.switchAngleReference = switchAngleReference;
+        this.rotation = rotation;
 
         switchRelativePosition = new Vector2D(relativeX, relativeY);
 
@@ -29,7 +44,8 @@ public class PointMassOnSwitch extends PointMass
             @Override
             protected double computeValue()
             {
-                return getAbsolutePosition().xProperty().get();
+                rotation.setAngle(switchAngleReference.get());
+                return rotation.rotateX(switchRelativePosition.xProperty().get(), switchRelativePosition.yProperty().get());
             }
         });
 
@@ -42,25 +58,99 @@ public class PointMassOnSwitch extends PointMass
             @Override
             protected double computeValue()
             {
-                return getAbsolutePosition().yProperty().get();
+                rotation.setAngle(switchAngleReference.get());
+                return rotation.rotateY(switchRelativePosition.xProperty().get(), switchRelativePosition.yProperty().get())
+                        + Constants.SWITCH_PIVOT_HEIGHT;
             }
         });
 
         // update absolute position by setting relative position
         switchRelativePosition.xProperty().set(relativeX);
         switchRelativePosition.yProperty().set(relativeY);
+
+        // the body's moments about this point rotate with the switch, so its torque is a rotation of them
+        torque = new DoubleBinding()
+        {
+            {
+                super.bind(massProperty(), getPosition().xProperty(), body, switchAngleReference);
+            }
+
+            @Override
+            protected double computeValue()
+            {
+                double x = getPosition().xProperty().get();
+                rotation.setAngle(switchAngleReference.get());
+                return -((massProperty().get() + body.getTotalMass()) * x + rotation.rotateX(body.getMomentX(), body.getMomentY()));
+            }
+        };
+
+        totalMass = new DoubleBinding()
+        {
+            {
+                super.bind(massProperty(), body);
+            }
+
+            @Override
+            protected double computeValue()
+            {
+                return massProperty().get() + body.getTotalMass();
+            }
+        };
+
+        // horizontal distance from the pivot to the combined center of mass, so torque is -totalMass * momentArm
+        momentArm = new DoubleBinding()
+        {
+            {
+                super.bind(massProperty(), getPosition().xProperty(), body, switchAngleReference);
+            }
+
+            @Override
+            protected double computeValue()
+            {
+                rotation.setAngle(switchAngleReference.get());
+                return getPosition().xProperty().get() + rotation.rotateX(getComOffsetX(), getComOffsetY());
+            }
+        };
     }
 
-    public Vector2D getSwitchRelativePosition()
+    public CompositeMass getBody()
     {
-        return switchRelativePosition;
+        return body;
+    }
+
+    // mass of the point and its body together
+    public double getTotalMass()
+    {
+        return totalMass.get();
     }
 
-    private Vector2D getAbsolutePosition()
+    public DoubleBinding totalMassProperty()
     {
-        Vector2D position = Vector2D.rotate(switchRelativePosition, switchAngleReference.get());
-        position = Vector2D.add(position, new Vector2D(0, Constants.SWITCH_PIVOT_HEIGHT));
-        return position;
+        return totalMass;
+    }
+
+    public DoubleBinding momentArmProperty()
+    {
+        return momentArm;
+    }
+
+    // offset of the combined center of mass from this point, along the switch's axes, so it turns with the switch
+    // and SwitchSolver takes the combined mass at getSwitchRelativePosition plus this offset
+    public double getComOffsetX()
+    {
+        double totalMass = getTotalMass();
+        return totalMass == 0 ? 0 : body.getMomentX() / totalMass;
+    }
+
+    public double getComOffsetY()
+    {
+        double totalMass = getTotalMass();
+        return totalMass == 0 ? 0 : body.getMomentY() / totalMass;
+    }
+
+    public Vector2D getSwitchRelativePosition()
+    {
+        return switchRelativePosition;
     }
 
     public DoubleBinding torqueProperty()
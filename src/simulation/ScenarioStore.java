@@ -0,0 +1,207 @@
+package simulation;
+
+import javafx.beans.InvalidationListener;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// many scenarios with the same number of robots, kept as packed floats with nothing per scenario but robot weights
+// and positions, the switch geometry coming from Constants for all of them
+// a SwitchSimulation with all its bindings only exists for scenarios that are materialized, such as the ones on
+// screen, and writes every change back into the store until it is released
+// not thread safe, like the simulations it materializes
+public class ScenarioStore
+{
+    private int robotCount;
+    private int size;
+
+    // scenario s, robot r at index s * robotCount + r
+    private float[] masses;
+    private float[] positions;
+
+    private Map<Integer, Materialized> materialized = new HashMap<>();
+
+    // shared scratch space for solving stored scenarios
+    private SwitchSolver solver;
+    private double[] robotMasses;
+    private double[] robotX;
+
+    private class Materialized
+    {
+        private SwitchSimulation simulation;
+        private InvalidationListener[] listeners;
+
+        Materialized(int scenario)
+        {
+            simulation = new SwitchSimulation(robotCount);
+            listeners = new InvalidationListener[robotCount];
+            for (int i = 0; i < robotCount; i++)
+            {
+                PointMassOnSwitch robot = simulation.getPointMasses().get(i + 1);
+                robot.massProperty().set(getMass(scenario, i));
+                robot.getSwitchRelativePosition().xProperty().set(getPosition(scenario, i));
+
+                int index = scenario * robotCount + i;
+                listeners[i] = o ->
+                {
+                    masses[index] = (float) robot.massProperty().get();
+                    positions[index] = (float) robot.getSwitchRelativePosition().xProperty().get();
+                };
+                robot.massProperty().addListener(listeners[i]);
+                robot.getSwitchRelativePosition().xProperty().addListener(listeners[i]);
+            }
+        }
+
+        void detach()
+        {
+            for (int i = 0; i < robotCount; i++)
+            {
+                PointMassOnSwitch robot = simulation.getPointMasses().get(i + 1);
+                robot.massProperty().removeListener(listeners[i]);
+                robot.getSwitchRelativePosition().xProperty().removeListener(listeners[i]);
+            }
+        }
+    }
+
+    public ScenarioStore(int robotCount, int initialCapacity)
+    {
+        this.robotCount = robotCount;
+        masses = new float[Math.max(1, initialCapacity) * robotCount];
+        positions = new float[masses.length];
+
+        solver = new SwitchSolver(robotCount + 1);
+        robotMasses = new double[robotCount];
+        robotX = new double[robotCount];
+    }
+
+    // returns the new scenario's index
+    public int add(double[] robotMasses, double[] robotX)
+    {
+        if (robotMasses.length != robotCount || robotX.length != robotCount)
+        {
+            throw new IllegalArgumentException("expected " + robotCount + " robots");
+        }
+
+        if ((size + 1) * robotCount > masses.length)
+        {
+            masses = Arrays.copyOf(masses, masses.length * 2);
+            positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+
+        for (int i = 0; i < robotCount; i++)
+        {
+            masses[size * robotCount + i] = (float) robotMasses[i];
+            positions[size * robotCount + i] = (float) robotX[i];
+        }
+        return size++;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getRobotCount()
+    {
+        return robotCount;
+    }
+
+    public double getMass(int scenario, int robot)
+    {
+        return masses[index(scenario, robot)];
+    }
+
+    public double getPosition(int scenario, int robot)
+    {
+        return positions[index(scenario, robot)];
+    }
+
+    // goes through the simulation if the scenario is materialized, so its bindings stay current
+    public void setMass(int scenario, int robot, double mass)
+    {
+        Materialized view = materialized.get(scenario);
+        if (view != null)
+        {
+            view.simulation.getPointMasses().get(robot + 1).massProperty().set(mass);
+        }
+        masses[index(scenario, robot)] = (float) mass;
+    }
+
+    public void setPosition(int scenario, int robot, double x)
+    {
+        Materialized view = materialized.get(scenario);
+        if (view != null)
+        {
+            view.simulation.getPointMasses().get(robot + 1).getSwitchRelativePosition().xProperty().set(x);
+        }
+        positions[index(scenario, robot)] = (float) x;
+    }
+
+    private int index(int scenario, int robot)
+    {
+        if (scenario < 0 || scenario >= size || robot < 0 || robot >= robotCount)
+        {
+            throw new IndexOutOfBoundsException("scenario " + scenario + " robot " + robot);
+        }
+        return scenario * robotCount + robot;
+    }
+
+    // straight from the packed values, without materializing
+    public double getEquilibriumAngle(int scenario)
+    {
+        load(scenario);
+        return SwitchSolver.robotEquilibriumAngle(robotMasses, robotX, robotCount);
+    }
+
+    public boolean isLevel(int scenario)
+    {
+        return SwitchSolver.isLevel(getEquilibriumAngle(scenario));
+    }
+
+    // shared solver loaded with the scenario, for level bounds and gradients, valid until the next call
+    public SwitchSolver solve(int scenario)
+    {
+        load(scenario);
+        solver.solveRobots(robotMasses, robotX, robotCount);
+        return solver;
+    }
+
+    private void load(int scenario)
+    {
+        for (int i = 0; i < robotCount; i++)
+        {
+            int index = index(scenario, i);
+            robotMasses[i] = masses[index];
+            robotX[i] = positions[index];
+        }
+    }
+
+    // the same simulation until it is released
+    public SwitchSimulation materialize(int scenario)
+    {
+        index(scenario, 0);
+        Materialized view = materialized.get(scenario);
+        if (view == null)
+        {
+            view = new Materialized(scenario);
+            materialized.put(scenario, view);
+        }
+        return view.simulation;
+    }
+
+    // the simulation stops writing back and can be garbage collected once the caller drops it
+    public void release(int scenario)
+    {
+        Materialized view = materialized.remove(scenario);
+        if (view != null)
+        {
+            view.detach();
+        }
+    }
+
+    public int getMaterializedCount()
+    {
+        return materialized.size();
+    }
+}
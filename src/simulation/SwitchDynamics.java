@@ -0,0 +1,193 @@
+package simulation;
+
+// time-domain model of the switch swinging as a rigid pendulum about the pivot, limited by the hard stops
+// all state is primitive, so stepping never allocates
+public class SwitchDynamics
+{
+    // inches per second squared
+    public static final double GRAVITY = 386.09;
+
+    private double stepSize = 1e-3;
+    private double dampingRatio = 0.1;
+    private double restitution = 0;
+    private double structureInertia = 0;
+
+    // moments of the current configuration about the pivot, in the switch's own frame
+    private double sumMassX;
+    private double sumMassY;
+    private double inertia;
+    private double damping;
+
+    private double angle;
+    private double angularVelocity;
+    private double time;
+    private double unsteppedTime;
+
+    // take the point masses currently in the solver, keeping the current angle and angular velocity
+    public void setConfiguration(SwitchSolver solver)
+    {
+        double inertia = 0;
+        for (int i = 0; i < solver.getCount(); i++)
+        {
+            double x = solver.getRelativeX(i);
+            double y = solver.getRelativeY(i);
+            inertia += solver.getMass(i) * (x * x + y * y);
+        }
+        setMoments(solver.getSumMassX(), solver.getSumMassY(), inertia);
+    }
+
+    public void setMoments(double sumMassX, double sumMassY, double inertia)
+    {
+        this.sumMassX = sumMassX;
+        this.sumMassY = sumMassY;
+        this.inertia = inertia + structureInertia;
+
+        // damping coefficient from the small-angle stiffness, so the ratio means the same thing for every configuration
+        double stiffness = GRAVITY * Math.abs(sumMassY);
+        damping = 2 * dampingRatio * Math.sqrt(stiffness * this.inertia);
+    }
+
+    public void reset(double angle, double angularVelocity)
+    {
+        this.angle = angle;
+        this.angularVelocity = angularVelocity;
+        time = 0;
+        unsteppedTime = 0;
+    }
+
+    private double angularAcceleration(double angle, double angularVelocity)
+    {
+        // counterclockwise torque from gravity acting on the rotated first moments
+        double torque = -GRAVITY * (Math.cos(angle) * sumMassX - Math.sin(angle) * sumMassY);
+        return (torque - damping * angularVelocity) / inertia;
+    }
+
+    // advance one fixed step with fourth order Runge-Kutta
+    public void step()
+    {
+        double h = stepSize;
+
+        double k1Angle = angularVelocity;
+        double k1Velocity = angularAcceleration(angle, angularVelocity);
+
+        double k2Angle = angularVelocity + h / 2 * k1Velocity;
+        double k2Velocity = angularAcceleration(angle + h / 2 * k1Angle, k2Angle);
+
+        double k3Angle = angularVelocity + h / 2 * k2Velocity;
+        double k3Velocity = angularAcceleration(angle + h / 2 * k2Angle, k3Angle);
+
+        double k4Angle = angularVelocity + h * k3Velocity;
+        double k4Velocity = angularAcceleration(angle + h * k3Angle, k4Angle);
+
+        angle += h / 6 * (k1Angle + 2 * k2Angle + 2 * k3Angle + k4Angle);
+        angularVelocity += h / 6 * (k1Velocity + 2 * k2Velocity + 2 * k3Velocity + k4Velocity);
+        time += h;
+
+        // hard stops, bouncing back with the coefficient of restitution
+        if (Math.abs(angle) > Constants.SWITCH_MAX_ANGLE)
+        {
+            angle = Math.copySign(Constants.SWITCH_MAX_ANGLE, angle);
+            if (angularVelocity * angle > 0)
+            {
+                angularVelocity = -restitution * angularVelocity;
+            }
+        }
+    }
+
+    // advance by wall clock time in fixed steps, carrying the remainder over to the next call
+    public void advance(double seconds)
+    {
+        unsteppedTime += seconds;
+        while (unsteppedTime >= stepSize)
+        {
+            step();
+            unsteppedTime -= stepSize;
+        }
+    }
+
+    // time at which the switch entered the level band for good, staying there for holdTime
+    // returns NaN if it hasn't settled by maxTime
+    public double timeToSettle(double maxTime, double holdTime)
+    {
+        double enteredTime = isLevel() ? time : Double.NaN;
+        while (time < maxTime)
+        {
+            step();
+            if (!isLevel())
+            {
+                enteredTime = Double.NaN;
+            }
+            else if (Double.isNaN(enteredTime))
+            {
+                enteredTime = time;
+            }
+            else if (time - enteredTime >= holdTime)
+            {
+                return enteredTime;
+            }
+        }
+        return Double.NaN;
+    }
+
+    public boolean isLevel()
+    {
+        return SwitchSolver.isLevel(angle);
+    }
+
+    public double getAngle()
+    {
+        return angle;
+    }
+
+    public double getAngularVelocity()
+    {
+        return angularVelocity;
+    }
+
+    public double getTime()
+    {
+        return time;
+    }
+
+    public double getStepSize()
+    {
+        return stepSize;
+    }
+
+    public void setStepSize(double stepSize)
+    {
+        this.stepSize = stepSize;
+    }
+
+    public double getDampingRatio()
+    {
+        return dampingRatio;
+    }
+
+    // takes effect on the next setConfiguration or setMoments
+    public void setDampingRatio(double dampingRatio)
+    {
+        this.dampingRatio = dampingRatio;
+    }
+
+    public double getRestitution()
+    {
+        return restitution;
+    }
+
+    public void setRestitution(double restitution)
+    {
+        this.restitution = restitution;
+    }
+
+    public double getStructureInertia()
+    {
+        return structureInertia;
+    }
+
+    // inertia of the switch frame beyond its point mass, takes effect on the next setConfiguration or setMoments
+    public void setStructureInertia(double structureInertia)
+    {
+        this.structureInertia = structureInertia;
+    }
+}
@@ -1,66 +1,82 @@
 package simulation;
 
-import javafx.beans.binding.Bindings;
+import geometry.Rotation;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.binding.BooleanBinding;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import metrics.SolverMetrics;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.DoubleSupplier;
 
 public class SwitchSimulation
 {
     private DoubleProperty solvePrecision = new SimpleDoubleProperty(1e-6);
-    private DoubleBinding comX = new SimpleDoubleProperty(0).add(0);
-    private DoubleBinding comY = new SimpleDoubleProperty(0).add(0);
-    private DoubleBinding totalMass = new SimpleDoubleProperty(0).add(0);
+    private SwitchSolver solver = new SwitchSolver(4);
+    private SolverMetrics metrics = SolverMetrics.getInstance();
+
+    // iterative, so the angle can be solved for torque models other than rigid point masses
+    private EquilibriumSolver equilibriumSolver = new EquilibriumSolver(solvePrecision.get());
+
+    // outputs read since the last input change, the only ones the next change needs to invalidate
+    private List<SolutionBinding> validOutputs = new ArrayList<>();
+    private List<SolutionBinding> spareOutputs = new ArrayList<>();
+
+    private DoubleBinding comX = new SolutionBinding(solver::getComX);
+    private DoubleBinding comY = new SolutionBinding(solver::getComY);
+    private DoubleBinding totalMass = new SolutionBinding(solver::getTotalMass);
     private DoubleProperty equilibriumAngle = new SimpleDoubleProperty(0);
+    private Rotation rotation = new Rotation();
     private BooleanBinding isLevel;
     private List<DoubleBinding> levelXMin = new ArrayList<>();
     private List<DoubleBinding> levelXZero = new ArrayList<>();
     private List<DoubleBinding> levelXMax = new ArrayList<>();
 
-    private List<PointMassOnSwitch> pointMasses = new ArrayList<>();
+    private ObservableList<PointMassOnSwitch> pointMasses = FXCollections.observableArrayList();
+    private ObservableList<PointMassOnSwitch> readOnlyPointMasses = FXCollections.unmodifiableObservableList(pointMasses);
+    private List<InputListener> inputListeners = new ArrayList<>();
 
     // indicator variable to prevent erroneous listener firing when properties are changed during threshold calculation
     private boolean temporarilyDisableListeners = false;
 
     public SwitchSimulation()
     {
-        PointMassOnSwitch switchMass = new PointMassOnSwitch(0, -Constants.SWITCH_COM_PIVOT_DISTANCE, Constants.SWITCH_WEIGHT, equilibriumAngle);
-        pointMasses.add(switchMass);
+        this(3);
+    }
 
-        for (int i = 0; i < 3; i++)
-        {
-            PointMassOnSwitch robot = new PointMassOnSwitch(0, -Constants.SWITCH_RUNG_PIVOT_DISTANCE, 0, equilibriumAngle);
-            pointMasses.add(robot);
-        }
+    public SwitchSimulation(int robotCount)
+    {
+        addPointMass(0, -Constants.SWITCH_COM_PIVOT_DISTANCE, Constants.SWITCH_WEIGHT);
 
-        // create bindings for COM
-        for (PointMassOnSwitch pointMass : pointMasses)
+        for (int i = 0; i < robotCount; i++)
         {
-            totalMass = totalMass.add(pointMass.massProperty());
-            comX = comX.add(pointMass.massProperty().multiply(pointMass.getSwitchRelativePosition().xProperty()));
-            comY = comY.add(pointMass.massProperty().multiply(pointMass.getSwitchRelativePosition().yProperty()));
+            addRobot();
         }
-        comX = comX.divide(totalMass);
-        comY = comY.divide(totalMass);
 
-        equilibriumAngle.bind(new DoubleBinding()
+        solvePrecision.addListener(o ->
         {
-            {
-                super.bind(comX, comY);
-            }
+            equilibriumSolver.setPrecision(solvePrecision.get());
+            invalidateSolution();
+        });
 
-            @Override
-            protected double computeValue()
+        // bind the angle last, so adding the initial point masses doesn't repeatedly move every point mass
+        equilibriumAngle.bind(new SolutionBinding(() ->
+        {
+            if (metrics.isEnabled())
             {
-                double angle = Math.atan(comX.get() / comY.get());
-                angle = Math.max(-Constants.SWITCH_MAX_ANGLE, Math.min(Constants.SWITCH_MAX_ANGLE, angle));
-                return angle;
+                metrics.recordAngleRecomputation();
             }
-        });
+            // pushed back into the solver, so anything drawing from it shows the same angle and level flag
+            double angle = equilibriumSolver.solve(solver);
+            solver.setEquilibriumAngle(angle);
+            return angle;
+        }));
 
         isLevel = new BooleanBinding()
         {
@@ -71,51 +87,190 @@ public class SwitchSimulation
             @Override
             protected boolean computeValue()
             {
-                return Math.abs(equilibriumAngle.getValue()) <= Constants.SWITCH_LEVEL_THRESHOLD;
+                return SwitchSolver.isLevel(equilibriumAngle.get());
             }
         };
+    }
+
+    // add a robot with no weight hanging from the middle of the rung
+    public PointMassOnSwitch addRobot()
+    {
+        return addPointMass(0, -Constants.SWITCH_RUNG_PIVOT_DISTANCE, 0);
+    }
+
+    // add any extra mass carried by the switch, such as ballast or game pieces
+    public PointMassOnSwitch addPointMass(double relativeX, double relativeY, double mass)
+    {
+        PointMassOnSwitch pointMass = new PointMassOnSwitch(relativeX, relativeY, mass, equilibriumAngle, rotation);
+
+        // the body is empty yet, but reading its aggregates once is what makes it report the first change
+        pointMass.getBody().getTotalMass();
+
+        InputListener inputListener = new InputListener(solver.addPointMass(mass, relativeX, relativeY));
+        pointMass.massProperty().addListener(inputListener);
+        pointMass.getSwitchRelativePosition().xProperty().addListener(inputListener);
+        pointMass.getSwitchRelativePosition().yProperty().addListener(inputListener);
+        pointMass.getBody().addListener(inputListener);
+        inputListeners.add(inputListener);
+
+        levelXMin.add(new SolutionBinding(() ->
+        {
+            if (metrics.isEnabled())
+            {
+                metrics.recordLevelBoundRecomputation();
+            }
+            return inputListener.index < 0 ? Double.NaN : solver.getLevelXMin(inputListener.index, inputListener.comOffsetX);
+        }));
+        levelXZero.add(new SolutionBinding(() ->
+        {
+            if (metrics.isEnabled())
+            {
+                metrics.recordLevelBoundRecomputation();
+            }
+            return inputListener.index < 0 ? Double.NaN : solver.getLevelXZero(inputListener.index, inputListener.comOffsetX);
+        }));
+        levelXMax.add(new SolutionBinding(() ->
+        {
+            if (metrics.isEnabled())
+            {
+                metrics.recordLevelBoundRecomputation();
+            }
+            return inputListener.index < 0 ? Double.NaN : solver.getLevelXMax(inputListener.index, inputListener.comOffsetX);
+        }));
+
+        // add to the list last, so list listeners see the level bounds already in place
+        pointMasses.add(pointMass);
+        invalidateSolution();
+        return pointMass;
+    }
+
+    public void removePointMass(PointMassOnSwitch pointMass)
+    {
+        int index = pointMasses.indexOf(pointMass);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("point mass is not on this switch");
+        }
+        if (index == 0)
+        {
+            throw new IllegalArgumentException("the switch's own mass can't be removed");
+        }
+
+        InputListener inputListener = inputListeners.remove(index);
+        inputListener.index = -1;
+        pointMass.massProperty().removeListener(inputListener);
+        pointMass.getSwitchRelativePosition().xProperty().removeListener(inputListener);
+        pointMass.getSwitchRelativePosition().yProperty().removeListener(inputListener);
+        pointMass.getBody().removeListener(inputListener);
+
+        // later point masses move down one index, in the solver as well
+        for (int i = index; i < inputListeners.size(); i++)
+        {
+            inputListeners.get(i).index = i;
+        }
+        solver.removePointMass(index);
+
+        // anyone still holding the removed mass's level bounds sees NaN instead of another mass's bounds
+        removeOutput(levelXMin.remove(index));
+        removeOutput(levelXZero.remove(index));
+        removeOutput(levelXMax.remove(index));
 
-        for (int i = 0; i < pointMasses.size(); i++)
+        pointMasses.remove(index);
+        invalidateSolution();
+    }
+
+    private void removeOutput(DoubleBinding output)
+    {
+        validOutputs.remove(output);
+        output.invalidate();
+    }
+
+    private void invalidateSolution()
+    {
+        // swap lists first, bindings read by listeners during invalidation are already up to date
+        List<SolutionBinding> outputs = validOutputs;
+        validOutputs = spareOutputs;
+        for (SolutionBinding output : outputs)
         {
-            levelXMin.add(findMassPositionByAngle(i, Constants.SWITCH_LEVEL_THRESHOLD));
-            levelXZero.add(findMassPositionByAngle(i, 0));
-            levelXMax.add(findMassPositionByAngle(i, -Constants.SWITCH_LEVEL_THRESHOLD));
+            output.invalidate();
         }
+        outputs.clear();
+        spareOutputs = outputs;
     }
 
-    private DoubleBinding findMassPositionByAngle(int index, double angle)
+    // pushes changes of one point mass into the solver's running sums
+    // a point mass with a body is pushed as one mass at the combined center of mass, so the solver's cost doesn't
+    // depend on how detailed the body is, and level bounds are shifted back to the point the user moves
+    private class InputListener implements InvalidationListener
     {
-        DoubleBinding numeratorLeft = new SimpleDoubleProperty(0).add(0);
-        for (PointMassOnSwitch pointMass : pointMasses)
+        private int index;
+        private double comOffsetX;
+
+        InputListener(int index)
         {
-            numeratorLeft = numeratorLeft.add(pointMass.massProperty()
-                    .multiply(pointMass.getSwitchRelativePosition().yProperty()));
+            this.index = index;
         }
-        numeratorLeft = numeratorLeft.multiply(Math.tan(angle));
 
-        DoubleBinding numeratorRight = new SimpleDoubleProperty(0).add(0);
-        for (int i = 0; i < pointMasses.size(); i++)
+        @Override
+        public void invalidated(Observable observable)
         {
-            // skip the object we are trying to solve for
-            if (i == index)
+            // timed through invalidation, which includes everything listening to the outputs
+            boolean timed = metrics.isEnabled();
+            long start = timed ? System.nanoTime() : 0;
+
+            PointMassOnSwitch pointMass = pointMasses.get(index);
+            comOffsetX = pointMass.getComOffsetX();
+            solver.setPointMass(index, pointMass.getTotalMass(),
+                    pointMass.getSwitchRelativePosition().xProperty().get() + comOffsetX,
+                    pointMass.getSwitchRelativePosition().yProperty().get() + pointMass.getComOffsetY());
+            invalidateSolution();
+
+            if (timed)
             {
-                continue;
+                metrics.recordSolve(System.nanoTime() - start);
             }
+        }
+    }
 
-            PointMassOnSwitch pointMass = pointMasses.get(i);
+    // binding that reads one value out of the shared solver state
+    private class SolutionBinding extends DoubleBinding
+    {
+        private DoubleSupplier value;
 
-            numeratorRight = numeratorRight.add(pointMass.massProperty()
-                    .multiply(pointMass.getSwitchRelativePosition().xProperty()));
+        SolutionBinding(DoubleSupplier value)
+        {
+            this.value = value;
         }
 
-        DoubleBinding theoretical = numeratorLeft.subtract(numeratorRight).divide(pointMasses.get(index).massProperty());
+        @Override
+        protected double computeValue()
+        {
+            validOutputs.add(this);
+            return value.getAsDouble();
+        }
+    }
 
-        return Bindings.max(-Constants.SWITCH_HANDLE_LENGTH / 2, Bindings.min(Constants.SWITCH_HANDLE_LENGTH / 2, theoretical));
+    // read only, changes go through the point mass properties
+    public SwitchSolver getSolver()
+    {
+        return solver;
     }
 
-    public List<PointMassOnSwitch> getPointMasses()
+    // warm-started from the last angle, exposes iteration counts
+    public EquilibriumSolver getEquilibriumSolver()
     {
-        return pointMasses;
+        return equilibriumSolver;
+    }
+
+    public DoubleProperty solvePrecisionProperty()
+    {
+        return solvePrecision;
+    }
+
+    // read only, masses are added and removed through addPointMass and removePointMass so the solver follows
+    public ObservableList<PointMassOnSwitch> getPointMasses()
+    {
+        return readOnlyPointMasses;
     }
 
     public List<DoubleBinding> getLevelXMin()
@@ -143,6 +298,12 @@ public class SwitchSimulation
         return comY;
     }
 
+    // rotation to the current equilibrium angle, shared by every point on the switch
+    public Rotation getRotation()
+    {
+        return rotation;
+    }
+
     public DoubleProperty equilibriumAngleProperty()
     {
         return equilibriumAngle;
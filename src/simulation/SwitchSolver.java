@@ -0,0 +1,385 @@
+package simulation;
+
+import geometry.Rotation;
+
+import java.util.Arrays;
+
+// headless equilibrium solver working on primitive arrays, with no dependency on JavaFX
+// all buffers are allocated up front, so solving a configuration does not allocate
+public class SwitchSolver implements TorqueModel
+{
+    // full re-summation interval for incremental updates, bounds floating point drift in the running sums
+    private static final int RESUM_INTERVAL = 1024;
+
+    private static final double TAN_LEVEL_MIN = Math.tan(Constants.SWITCH_LEVEL_THRESHOLD);
+    private static final double TAN_LEVEL_MAX = Math.tan(-Constants.SWITCH_LEVEL_THRESHOLD);
+
+    private int count;
+
+    // current point masses, positions relative to the switch pivot
+    private double[] masses;
+    private double[] relativeX;
+    private double[] relativeY;
+
+    // running sums shared by the COM and every level bound
+    private double totalMass;
+    private double sumMassX;
+    private double sumMassY;
+    private int updatesSinceResum;
+
+    // incremented on every change, so readers can tell whether anything moved since they last looked
+    private long modificationCount;
+
+    private double comX;
+    private double comY;
+    private double equilibriumAngle;
+    private boolean level;
+
+    // shared by torque and its derivative at the same angle
+    private Rotation rotation = new Rotation();
+
+    public SwitchSolver(int capacity)
+    {
+        masses = new double[capacity];
+        relativeX = new double[capacity];
+        relativeY = new double[capacity];
+    }
+
+    // only allocates when the number of point masses grows past the current capacity
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > masses.length)
+        {
+            int newCapacity = Math.max(capacity, masses.length * 2);
+            masses = Arrays.copyOf(masses, newCapacity);
+            relativeX = Arrays.copyOf(relativeX, newCapacity);
+            relativeY = Arrays.copyOf(relativeY, newCapacity);
+        }
+    }
+
+    // solve for the first count point masses, with positions relative to the switch pivot
+    public void solve(double[] masses, double[] relativeX, double[] relativeY, int count)
+    {
+        ensureCapacity(count);
+        System.arraycopy(masses, 0, this.masses, 0, count);
+        System.arraycopy(relativeX, 0, this.relativeX, 0, count);
+        System.arraycopy(relativeY, 0, this.relativeY, 0, count);
+        this.count = count;
+
+        resum();
+        update();
+    }
+
+    // solve with the switch at index 0 and robots hanging from the rung at indices 1 to robotCount
+    public void solveRobots(double[] robotMasses, double[] robotX, int robotCount)
+    {
+        ensureCapacity(robotCount + 1);
+
+        masses[0] = Constants.SWITCH_WEIGHT;
+        relativeX[0] = 0;
+        relativeY[0] = -Constants.SWITCH_COM_PIVOT_DISTANCE;
+
+        for (int i = 0; i < robotCount; i++)
+        {
+            masses[i + 1] = robotMasses[i];
+            relativeX[i + 1] = robotX[i];
+            relativeY[i + 1] = -Constants.SWITCH_RUNG_PIVOT_DISTANCE;
+        }
+        count = robotCount + 1;
+
+        resum();
+        update();
+    }
+
+    // append a point mass, returning its index
+    public int addPointMass(double mass, double x, double y)
+    {
+        ensureCapacity(count + 1);
+        masses[count] = 0;
+        relativeX[count] = 0;
+        relativeY[count] = 0;
+        count++;
+
+        setPointMass(count - 1, mass, x, y);
+        return count - 1;
+    }
+
+    // remove a point mass, later point masses move down one index
+    public void removePointMass(int index)
+    {
+        totalMass -= masses[index];
+        sumMassX -= masses[index] * relativeX[index];
+        sumMassY -= masses[index] * relativeY[index];
+
+        System.arraycopy(masses, index + 1, masses, index, count - index - 1);
+        System.arraycopy(relativeX, index + 1, relativeX, index, count - index - 1);
+        System.arraycopy(relativeY, index + 1, relativeY, index, count - index - 1);
+        count--;
+
+        if (++updatesSinceResum >= RESUM_INTERVAL)
+        {
+            resum();
+        }
+        update();
+    }
+
+    // change one point mass, updating the running sums by the difference, so the cost doesn't depend on count
+    public void setPointMass(int index, double mass, double x, double y)
+    {
+        totalMass += mass - masses[index];
+        sumMassX += mass * x - masses[index] * relativeX[index];
+        sumMassY += mass * y - masses[index] * relativeY[index];
+
+        masses[index] = mass;
+        relativeX[index] = x;
+        relativeY[index] = y;
+
+        if (++updatesSinceResum >= RESUM_INTERVAL)
+        {
+            resum();
+        }
+        update();
+    }
+
+    private void resum()
+    {
+        totalMass = 0;
+        sumMassX = 0;
+        sumMassY = 0;
+        for (int i = 0; i < count; i++)
+        {
+            totalMass += masses[i];
+            sumMassX += masses[i] * relativeX[i];
+            sumMassY += masses[i] * relativeY[i];
+        }
+        updatesSinceResum = 0;
+    }
+
+    private void update()
+    {
+        modificationCount++;
+        comX = sumMassX / totalMass;
+        comY = sumMassY / totalMass;
+        equilibriumAngle = equilibriumAngle(comX, comY);
+        level = isLevel(equilibriumAngle);
+    }
+
+    // equilibrium angle only, for robots hanging from the rung, summed in the same order as solveRobots
+    public static double robotEquilibriumAngle(double[] robotMasses, double[] robotX, int robotCount)
+    {
+        double totalMass = Constants.SWITCH_WEIGHT;
+        double sumMassX = 0;
+        double sumMassY = Constants.SWITCH_WEIGHT * -Constants.SWITCH_COM_PIVOT_DISTANCE;
+        for (int i = 0; i < robotCount; i++)
+        {
+            totalMass += robotMasses[i];
+            sumMassX += robotMasses[i] * robotX[i];
+            sumMassY += robotMasses[i] * -Constants.SWITCH_RUNG_PIVOT_DISTANCE;
+        }
+        return equilibriumAngle(sumMassX / totalMass, sumMassY / totalMass);
+    }
+
+    // angle at which the switch hangs with its combined COM directly below the pivot, limited by the hard stops
+    public static double equilibriumAngle(double comX, double comY)
+    {
+        double angle = Math.atan(comX / comY);
+        return Math.max(-Constants.SWITCH_MAX_ANGLE, Math.min(Constants.SWITCH_MAX_ANGLE, angle));
+    }
+
+    // rigid point masses, the torque of the first moments rotated to the angle
+    @Override
+    public double torque(double angle)
+    {
+        rotation.setAngle(angle);
+        return -rotation.rotateX(sumMassX, sumMassY);
+    }
+
+    @Override
+    public double torqueDerivative(double angle)
+    {
+        rotation.setAngle(angle);
+        return rotation.rotateY(sumMassX, sumMassY);
+    }
+
+    public static boolean isLevel(double angle)
+    {
+        return Math.abs(angle) <= Constants.SWITCH_LEVEL_THRESHOLD;
+    }
+
+    // position along the handle that a mass would need to be at for the switch to hang at the angle with this tangent
+    // sumMassY includes every mass, otherMassX excludes the mass being solved for
+    public static double massPositionByAngle(double sumMassY, double otherMassX, double mass, double tanAngle)
+    {
+        double theoretical = (sumMassY * tanAngle - otherMassX) / mass;
+        return Math.max(-Constants.SWITCH_HANDLE_LENGTH / 2, Math.min(Constants.SWITCH_HANDLE_LENGTH / 2, theoretical));
+    }
+
+    public long getModificationCount()
+    {
+        return modificationCount;
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    public double getMass(int index)
+    {
+        return masses[index];
+    }
+
+    public double getRelativeX(int index)
+    {
+        return relativeX[index];
+    }
+
+    public double getRelativeY(int index)
+    {
+        return relativeY[index];
+    }
+
+    public double getSumMassX()
+    {
+        return sumMassX;
+    }
+
+    public double getSumMassY()
+    {
+        return sumMassY;
+    }
+
+    public double getTotalMass()
+    {
+        return totalMass;
+    }
+
+    public double getComX()
+    {
+        return comX;
+    }
+
+    public double getComY()
+    {
+        return comY;
+    }
+
+    public double getEquilibriumAngle()
+    {
+        return equilibriumAngle;
+    }
+
+    // replace the closed form angle with one solved elsewhere, such as by EquilibriumSolver, so every reader of this
+    // solver sees the same angle and level flag as whoever solved it, until the next change recomputes the closed form
+    public void setEquilibriumAngle(double angle)
+    {
+        if (angle != equilibriumAngle)
+        {
+            modificationCount++;
+            equilibriumAngle = angle;
+            level = isLevel(angle);
+        }
+    }
+
+    public boolean isLevel()
+    {
+        return level;
+    }
+
+    // level bounds are derived from the shared sums on demand, each in constant time
+    public double getLevelXMin(int index)
+    {
+        return massPositionByAngle(index, TAN_LEVEL_MIN);
+    }
+
+    public double getLevelXZero(int index)
+    {
+        return massPositionByAngle(index, 0);
+    }
+
+    public double getLevelXMax(int index)
+    {
+        return massPositionByAngle(index, TAN_LEVEL_MAX);
+    }
+
+    // level bounds for a reference point offsetX away from the point mass, such as where a composite body is
+    // attached when the point mass stands for its aggregate, limited so the reference point stays on the handle
+    public double getLevelXMin(int index, double offsetX)
+    {
+        return massPositionByAngle(index, TAN_LEVEL_MIN, offsetX);
+    }
+
+    public double getLevelXZero(int index, double offsetX)
+    {
+        return massPositionByAngle(index, 0, offsetX);
+    }
+
+    public double getLevelXMax(int index, double offsetX)
+    {
+        return massPositionByAngle(index, TAN_LEVEL_MAX, offsetX);
+    }
+
+    private double massPositionByAngle(int index, double tanAngle)
+    {
+        return massPositionByAngle(sumMassY, sumMassX - masses[index] * relativeX[index], masses[index], tanAngle);
+    }
+
+    private double massPositionByAngle(int index, double tanAngle, double offsetX)
+    {
+        return massPositionByAngle(sumMassY, sumMassX - masses[index] * (relativeX[index] - offsetX), masses[index], tanAngle);
+    }
+
+    // partial derivatives of the equilibrium angle with respect to every point mass's mass, x and y, for first-order
+    // what-if estimates without re-solving, all zero while the angle is held by a hard stop
+    public void getEquilibriumAngleGradient(double[] dMass, double[] dX, double[] dY)
+    {
+        // angle = atan(sumMassX / sumMassY), so d angle = (sumMassY d sumMassX - sumMassX d sumMassY) / r^2
+        double rSquared = sumMassX * sumMassX + sumMassY * sumMassY;
+        boolean clamped = Math.abs(Math.atan(comX / comY)) > Constants.SWITCH_MAX_ANGLE;
+        double dSumMassX = clamped ? 0 : sumMassY / rSquared;
+        double dSumMassY = clamped ? 0 : -sumMassX / rSquared;
+
+        for (int i = 0; i < count; i++)
+        {
+            dMass[i] = dSumMassX * relativeX[i] + dSumMassY * relativeY[i];
+            dX[i] = dSumMassX * masses[i];
+            dY[i] = dSumMassY * masses[i];
+        }
+    }
+
+    // partial derivatives of one point mass's level bound with respect to every input, same layout as the angle's
+    public void getLevelXMinGradient(int index, double[] dMass, double[] dX, double[] dY)
+    {
+        massPositionGradient(index, TAN_LEVEL_MIN, dMass, dX, dY);
+    }
+
+    public void getLevelXZeroGradient(int index, double[] dMass, double[] dX, double[] dY)
+    {
+        massPositionGradient(index, 0, dMass, dX, dY);
+    }
+
+    public void getLevelXMaxGradient(int index, double[] dMass, double[] dX, double[] dY)
+    {
+        massPositionGradient(index, TAN_LEVEL_MAX, dMass, dX, dY);
+    }
+
+    // bound = (sumMassY tan - other moment) / mass, zero while it is clamped to the end of the handle
+    private void massPositionGradient(int index, double tanAngle, double[] dMass, double[] dX, double[] dY)
+    {
+        double mass = masses[index];
+        double bound = (sumMassY * tanAngle - (sumMassX - mass * relativeX[index])) / mass;
+        double scale = Math.abs(bound) > Constants.SWITCH_HANDLE_LENGTH / 2 ? 0 : 1 / mass;
+
+        for (int i = 0; i < count; i++)
+        {
+            dMass[i] = scale * (relativeY[i] * tanAngle - relativeX[i]);
+            dX[i] = scale * -masses[i];
+            dY[i] = scale * masses[i] * tanAngle;
+        }
+
+        // its own moment isn't part of the other moment, but its mass divides the bound
+        dMass[index] = scale * (relativeY[index] * tanAngle - bound);
+        dX[index] = 0;
+        dY[index] = scale * mass * tanAngle;
+    }
+}
@@ -0,0 +1,11 @@
+package simulation;
+
+// net gravity torque about the pivot as a function of the switch angle, counterclockwise positive, per unit of gravity
+// lets EquilibriumSolver handle geometry whose moments change with the angle, not just rigid point masses
+public interface TorqueModel
+{
+    double torque(double angle);
+
+    // called right after torque with the same angle, so implementations can share work between the two
+    double torqueDerivative(double angle);
+}